@@ -7,6 +7,7 @@ import android.preference.PreferenceManager;
 import com.stardust.autojs.runtime.api.AutomatorConfig;
 import com.stardust.automator.AccessibilityEventCommandHost;
 import com.stardust.scriptdroid.autojs.AutoJs;
+import com.stardust.scriptdroid.service.AccessibilityWatchDogService;
 
 import org.mozilla.javascript.tools.debugger.Dim;
 import org.mozilla.javascript.tools.debugger.GuiCallback;
@@ -26,12 +27,15 @@ public class Pref {
                 AutoJs.getInstance().getCommandHost().setRunMode(getRunModeFromValue(sharedPreferences.getString(key, null)));
             } else if (key.equals(getString(R.string.key_guard_mode))) {
                 AutomatorConfig.setIsUnintendedGuardEnabled(sharedPreferences.getBoolean(getString(R.string.key_guard_mode), false));
+            } else if (key.equals(getString(R.string.key_content_change_coalescing_window))) {
+                AccessibilityWatchDogService.setContentChangeCoalescingWindow(getContentChangeCoalescingWindow());
             }
         }
     };
 
     static {
         AutomatorConfig.setIsUnintendedGuardEnabled(def().getBoolean(getString(R.string.key_guard_mode), false));
+        AccessibilityWatchDogService.setContentChangeCoalescingWindow(getContentChangeCoalescingWindow());
     }
 
     private static int getRunModeFromValue(String value) {
@@ -39,9 +43,9 @@ public class Pref {
             return AccessibilityEventCommandHost.RUN_MODE_THREAD_POOL;
         switch (value) {
             case "KEY_THREAD_POOL":
-                return AccessibilityEventCommandHost.RUN_MODE_THREAD_POOL;
+            // 每次新建线程的方式已由线程数有限的线程池取代
             case "KEY_NEW_THREAD_EVERY_TIME":
-                return AccessibilityEventCommandHost.RUN_MODE_NEW_THREAD_EVERY_TIME;
+                return AccessibilityEventCommandHost.RUN_MODE_THREAD_POOL;
             default:
                 return AccessibilityEventCommandHost.RUN_MODE_SINGLE_THREAD;
         }
@@ -106,6 +110,14 @@ public class Pref {
         }
     }
 
+    public static long getContentChangeCoalescingWindow() {
+        try {
+            return Long.parseLong(def().getString(getString(R.string.key_content_change_coalescing_window), "20"));
+        } catch (NumberFormatException e) {
+            return 20;
+        }
+    }
+
     public static boolean isFirstUsing() {
         return getDisposableBoolean("isFirstUsing", true);
     }
@@ -2,7 +2,9 @@ package com.stardust.scriptdroid.autojs;
 
 import android.accessibilityservice.AccessibilityService;
 import android.content.Context;
+import android.os.Build;
 import android.support.annotation.Nullable;
+import android.view.accessibility.AccessibilityEvent;
 
 import com.stardust.autojs.ScriptEngineService;
 import com.stardust.autojs.ScriptEngineServiceBuilder;
@@ -13,6 +15,7 @@ import com.stardust.autojs.runtime.ScriptStopException;
 import com.stardust.autojs.runtime.api.AbstractShell;
 import com.stardust.autojs.runtime.api.AppUtils;
 import com.stardust.automator.AccessibilityEventCommandHost;
+import com.stardust.automator.UiTreeMirror;
 import com.stardust.automator.simple_action.SimpleActionPerformHost;
 import com.stardust.pio.PFile;
 import com.stardust.pio.UncheckedIOException;
@@ -30,8 +33,14 @@ import com.stardust.scriptdroid.service.AccessibilityWatchDogService;
 import com.stardust.scriptdroid.tool.AccessibilityServiceTool;
 import com.stardust.scriptdroid.ui.console.JraskaConsole;
 import com.stardust.view.accessibility.AccessibilityServiceUtils;
+import com.stardust.view.accessibility.AsyncAccessibilityDelegate;
+import com.stardust.view.accessibility.WindowChangeObserver;
+import com.stardust.view.accessibility.WindowRootCache;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 
 /**
@@ -42,6 +51,9 @@ public class AutoJs implements AccessibilityBridge {
 
     private static AutoJs instance;
     private static final String INIT_SCRIPT_PATH = "js/autojs_init.js";
+    private static final int RECORDER_QUEUE_CAPACITY = 256;
+    private static final Set<Integer> RECORDER_DROPPABLE_EVENT_TYPES = new HashSet<>(Arrays.asList(
+            AccessibilityEvent.TYPE_VIEW_SCROLLED, AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED));
 
     public static AutoJs getInstance() {
         return instance;
@@ -55,6 +67,9 @@ public class AutoJs implements AccessibilityBridge {
     private final SimpleActionPerformHost mSimpleActionPerformHost = new SimpleActionPerformHost();
     private final AccessibilityActionRecorder mAccessibilityActionRecorder = new AccessibilityActionRecorder();
     private final LayoutInspector mLayoutInspector = new LayoutInspector();
+    private final WindowChangeObserver mWindowChangeObserver = new WindowChangeObserver();
+    private final UiTreeMirror mUiTreeMirror = new UiTreeMirror();
+    private WindowRootCache mWindowRootCache;
     private final ScriptEngineService mScriptEngineService;
     private final AccessibilityInfoProvider mAccessibilityInfoProvider;
     private final UiHandler mUiHandler;
@@ -104,7 +119,15 @@ public class AutoJs implements AccessibilityBridge {
 
     private void addAccessibilityServiceDelegates() {
         AccessibilityWatchDogService.addDelegate(100, mAccessibilityInfoProvider);
-        AccessibilityWatchDogService.addDelegate(300, mAccessibilityActionRecorder);
+        AccessibilityWatchDogService.addDelegate(200, mWindowChangeObserver);
+        AccessibilityWatchDogService.addDelegate(250, mUiTreeMirror);
+        // 录制时把事件转换为脚本较慢，放到单独的线程中。队列满时不能阻塞无障碍服务的线程，
+        // 改为用同类型的新事件取代旧事件(连续的滚动和文本变化只需保留最后一次)，被取代和丢弃的次数见事件处理统计。
+        // 点击不可丢弃，否则录制的脚本会少掉操作
+        AsyncAccessibilityDelegate recorderDelegate = new AsyncAccessibilityDelegate(mAccessibilityActionRecorder,
+                RECORDER_QUEUE_CAPACITY, AsyncAccessibilityDelegate.POLICY_COALESCE_BY_TYPE, RECORDER_DROPPABLE_EVENT_TYPES);
+        mAccessibilityActionRecorder.setEventQueue(recorderDelegate);
+        AccessibilityWatchDogService.addDelegate(300, recorderDelegate);
         // AccessibilityWatchDogService.addDelegate(400, mSimpleActionPerformHost);
         //AccessibilityWatchDogService.addDelegate(500, mAccessibilityEventCommandHost);
     }
@@ -167,6 +190,25 @@ public class AutoJs implements AccessibilityBridge {
         return mAccessibilityInfoProvider;
     }
 
+    @Override
+    public WindowChangeObserver getWindowChangeObserver() {
+        return mWindowChangeObserver;
+    }
+
+    @Override
+    public UiTreeMirror getUiTreeMirror() {
+        return mUiTreeMirror;
+    }
+
+    @Nullable
+    @Override
+    public synchronized WindowRootCache getWindowRootCache() {
+        if (mWindowRootCache == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mWindowRootCache = new WindowRootCache(mWindowChangeObserver);
+        }
+        return mWindowRootCache;
+    }
+
     public ScriptEngineService getScriptEngineService() {
         return mScriptEngineService;
     }
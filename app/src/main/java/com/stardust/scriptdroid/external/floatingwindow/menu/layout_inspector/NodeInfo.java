@@ -7,6 +7,8 @@ import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.stardust.automator.UiObject;
+import com.stardust.automator.UiSnapshot;
+import com.stardust.automator.UiTreeWalker;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -76,20 +78,35 @@ public class NodeInfo {
 
 
     public static NodeInfo capture(@NonNull UiObject root) {
-        NodeInfo nodeInfo = new NodeInfo(root);
-        int childCount = root.getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            UiObject child = root.child(i);
-            if (child != null) {
-                nodeInfo.children.add(capture(child));
+        // path.get(d)为当前路径上深度为d的节点
+        final List<NodeInfo> path = new ArrayList<>();
+        UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                NodeInfo nodeInfo = new NodeInfo(node);
+                if (depth > 0) {
+                    path.get(depth - 1).children.add(nodeInfo);
+                }
+                if (depth < path.size()) {
+                    path.set(depth, nodeInfo);
+                } else {
+                    path.add(nodeInfo);
+                }
+                return UiTreeWalker.CONTINUE;
             }
-        }
-        return nodeInfo;
+        });
+        return path.get(0);
+    }
+
+    public static NodeInfo capture(@NonNull UiSnapshot snapshot) {
+        return capture(snapshot.getRootObject());
     }
 
     public static NodeInfo capture(@NonNull AccessibilityNodeInfo root) {
-        UiObject r = UiObject.createRoot(root);
-        return capture(r);
+        UiSnapshot snapshot = UiSnapshot.capture(UiObject.createRoot(root));
+        NodeInfo nodeInfo = capture(snapshot);
+        snapshot.recycle();
+        return nodeInfo;
     }
 
     public List<NodeInfo> getChildren() {
@@ -19,6 +19,8 @@ import java.util.List;
 
 /**
  * Created by Stardust on 2017/2/14.
+ * <p>
+ * record()在录制委托的工作线程中调用，getScript()在主线程中调用，因此都需要同步。
  */
 
 public class AccessibilityActionConverter {
@@ -45,7 +47,7 @@ public class AccessibilityActionConverter {
 
     private boolean mShouldIgnoreFirstAction = false;
 
-    public void record(AccessibilityService service, AccessibilityEvent event) {
+    public synchronized void record(AccessibilityService service, AccessibilityEvent event) {
         EventToScriptConverter converter = CONVERTER_MAP.get(event.getEventType());
         if (converter != null) {
             if (mFirstAction && mShouldIgnoreFirstAction) {
@@ -58,11 +60,11 @@ public class AccessibilityActionConverter {
         }
     }
 
-    public String getScript() {
+    public synchronized String getScript() {
         return mScript.toString();
     }
 
-    public void onResume() {
+    public synchronized void onResume() {
         mFirstAction = true;
     }
 
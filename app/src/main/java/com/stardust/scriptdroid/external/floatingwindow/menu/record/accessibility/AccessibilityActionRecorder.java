@@ -1,10 +1,15 @@
 package com.stardust.scriptdroid.external.floatingwindow.menu.record.accessibility;
 
 import android.accessibilityservice.AccessibilityService;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 
 import com.stardust.scriptdroid.external.floatingwindow.menu.record.Recorder;
 import com.stardust.view.accessibility.AccessibilityDelegate;
+import com.stardust.view.accessibility.AsyncAccessibilityDelegate;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -30,15 +35,29 @@ public class AccessibilityActionRecorder extends Recorder.AbstractRecorder imple
         }
     }
 
+    private static final String TAG = "AccessibilityActionRecorder";
     private static final Set<Integer> EVENT_TYPES = new HashSet<>(Arrays.asList(AccessibilityEvent.TYPE_VIEW_CLICKED, AccessibilityEvent.TYPE_VIEW_LONG_CLICKED, AccessibilityEvent.TYPE_VIEW_SCROLLED, AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED));
 
     private static final long RECORD_TIME_OUT = 10 * 60 * 1000;
+    private static final long STOP_DRAIN_TIME_OUT = 1000;
 
     private boolean mShouldIgnoreFirstAction = false;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mStopOnTimeOut = new Runnable() {
+        @Override
+        public void run() {
+            int state = getState();
+            if (state == STATE_RECORDING || state == STATE_PAUSED) {
+                stop();
+            }
+        }
+    };
 
 
-    private AccessibilityActionConverter mConverter;
+    private volatile AccessibilityActionConverter mConverter;
     private long mRecordStartMillis;
+    @Nullable
+    private AsyncAccessibilityDelegate mEventQueue;
 
     public AccessibilityActionRecorder() {
         super(true);
@@ -50,6 +69,21 @@ public class AccessibilityActionRecorder extends Recorder.AbstractRecorder imple
         mRecordStartMillis = System.currentTimeMillis();
     }
 
+    /**
+     * 设置在工作线程中处理事件的异步委托。停止录制之前会先等它处理完已收到的事件，否则这些事件会因状态已改变而被丢弃。
+     */
+    public void setEventQueue(@Nullable AsyncAccessibilityDelegate eventQueue) {
+        mEventQueue = eventQueue;
+    }
+
+    @Override
+    public void stop() {
+        if (mEventQueue != null && !mEventQueue.awaitIdle(STOP_DRAIN_TIME_OUT)) {
+            Log.w(TAG, "stop before all pending events are recorded");
+        }
+        super.stop();
+    }
+
     @Override
     protected void stopImpl() {
         setState(STATE_NOT_START);
@@ -74,9 +108,13 @@ public class AccessibilityActionRecorder extends Recorder.AbstractRecorder imple
         return EVENT_TYPES;
     }
 
+    /**
+     * 事件在AsyncAccessibilityDelegate的工作线程中处理，而stop()会通知界面，因此在主线程中停止
+     */
     private void checkTimeOut() {
         if (System.currentTimeMillis() - mRecordStartMillis > RECORD_TIME_OUT) {
-            stop();
+            mMainHandler.removeCallbacks(mStopOnTimeOut);
+            mMainHandler.post(mStopOnTimeOut);
         }
     }
 
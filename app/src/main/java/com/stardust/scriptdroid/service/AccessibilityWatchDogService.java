@@ -3,6 +3,7 @@ package com.stardust.scriptdroid.service;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Context;
 import android.os.Build;
+import android.os.Handler;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.accessibility.AccessibilityEvent;
@@ -11,12 +12,14 @@ import android.view.accessibility.AccessibilityNodeInfo;
 import com.nickandjerry.dynamiclayoutinflator.lib.DynamicLayoutInflator;
 import com.stardust.scriptdroid.tool.AccessibilityServiceTool;
 import com.stardust.view.accessibility.AccessibilityDelegate;
+import com.stardust.view.accessibility.AccessibilityMetrics;
 import com.stardust.view.accessibility.AccessibilityService;
 import com.stardust.view.accessibility.AccessibilityServiceUtils;
+import com.stardust.view.accessibility.ContentChangeCoalescer;
+import com.stardust.view.accessibility.DelegateDispatchTable;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -27,20 +30,70 @@ import java.util.TreeMap;
 public class AccessibilityWatchDogService extends AccessibilityService {
 
     private static final String TAG = "AccessibilityWatchDog";
+    private static final boolean DEBUG = false;
 
     private static final SortedMap<Integer, AccessibilityDelegate> mDelegates = new TreeMap<>();
     private static final Object LOCK = new Object();
     private static AccessibilityWatchDogService instance;
-    private static boolean containsAllEventTypes = false;
-    private static final Set<Integer> eventTypes = new HashSet<>();
+    // 只在添加或移除委托时重建，分发事件时不加锁
+    private static volatile DelegateDispatchTable sDispatchTable = DelegateDispatchTable.EMPTY;
+    private static volatile long sContentChangeCoalescingWindow = 20;
+    private static final AccessibilityMetrics sMetrics = new AccessibilityMetrics();
+
+    private final ContentChangeCoalescer mContentChangeCoalescer = new ContentChangeCoalescer(new Handler(),
+            sContentChangeCoalescingWindow, new ContentChangeCoalescer.Dispatcher() {
+        @Override
+        public void dispatch(AccessibilityEvent event) {
+            dispatchEvent(event);
+        }
+
+        @Override
+        public void onHeld(AccessibilityEvent event) {
+            notifyEventHeld(event);
+        }
+    });
 
     public static void addDelegate(int uniquePriority, AccessibilityDelegate delegate) {
-        mDelegates.put(uniquePriority, delegate);
-        Set<Integer> set = delegate.getEventTypes();
-        if (set == null)
-            containsAllEventTypes = true;
-        else
-            eventTypes.addAll(set);
+        synchronized (mDelegates) {
+            AccessibilityDelegate old = mDelegates.put(uniquePriority, delegate);
+            if (old != null) {
+                sMetrics.removeDelegateMetrics(old);
+            }
+            sDispatchTable = DelegateDispatchTable.build(mDelegates, sMetrics);
+        }
+    }
+
+    public static void removeDelegate(int uniquePriority) {
+        synchronized (mDelegates) {
+            AccessibilityDelegate old = mDelegates.remove(uniquePriority);
+            if (old != null) {
+                sMetrics.removeDelegateMetrics(old);
+                sDispatchTable = DelegateDispatchTable.build(mDelegates, sMetrics);
+            }
+        }
+    }
+
+    /**
+     * 返回已添加的委托，按优先级排列
+     */
+    public static List<AccessibilityDelegate> getDelegates() {
+        synchronized (mDelegates) {
+            return new ArrayList<>(mDelegates.values());
+        }
+    }
+
+    /**
+     * 设置合并内容变化事件的时间窗口(毫秒)，同一控件在窗口内的多次内容变化只分发一次。不大于0时不合并。
+     */
+    public static void setContentChangeCoalescingWindow(long millis) {
+        sContentChangeCoalescingWindow = millis;
+    }
+
+    /**
+     * 返回事件处理的统计，用于查找拖慢事件处理的委托
+     */
+    public static AccessibilityMetrics getMetrics() {
+        return sMetrics;
     }
 
     public static boolean isEnable(Context context) {
@@ -53,33 +106,53 @@ public class AccessibilityWatchDogService extends AccessibilityService {
 
     @Override
     public void onAccessibilityEvent(final AccessibilityEvent event) {
-        if (event.getEventType() == AccessibilityEvent.TYPE_NOTIFICATION_STATE_CHANGED) {
+        if (DEBUG)
+            Log.v(TAG, "onAccessibilityEvent: " + event);
+        sMetrics.onEventReceived(event.getEventType());
+        mContentChangeCoalescer.setWindowMillis(sContentChangeCoalescingWindow);
+        mContentChangeCoalescer.offer(event);
+    }
 
-        }
-        Log.v(TAG, "onAccessibilityEvent: " + event);
-        if (!containsAllEventTypes && !eventTypes.contains(event.getEventType()))
-            return;
-        for (Map.Entry<Integer, AccessibilityDelegate> entry : mDelegates.entrySet()) {
-            AccessibilityDelegate delegate = entry.getValue();
-            Set<Integer> types = delegate.getEventTypes();
-            if (types != null && !delegate.getEventTypes().contains(event.getEventType()))
-                continue;
-            long start = System.currentTimeMillis();
-            if (delegate.onAccessibilityEvent(AccessibilityWatchDogService.this, event))
+    private void dispatchEvent(AccessibilityEvent event) {
+        int eventType = event.getEventType();
+        DelegateDispatchTable table = sDispatchTable;
+        AccessibilityDelegate[] delegates = table.get(eventType);
+        AccessibilityMetrics.DelegateMetrics[] metrics = table.getMetrics(eventType);
+        long dispatchStart = System.nanoTime();
+        long start = dispatchStart;
+        for (int i = 0; i < delegates.length; i++) {
+            boolean consumed = delegates[i].onAccessibilityEvent(AccessibilityWatchDogService.this, event);
+            long end = System.nanoTime();
+            metrics[i].record(end - start);
+            start = end;
+            if (consumed)
                 break;
-            Log.v(TAG, "millis: " + (System.currentTimeMillis() - start) + " delegate: " + entry.getValue().getClass().getName());
+        }
+        sMetrics.onEventDispatched(eventType, start - dispatchStart);
+    }
+
+    /**
+     * 事件被合并窗口暂存时通知关心它的委托，使窗口代数、控件树镜像等不会在转发之前把过期的结果当作最新的
+     */
+    private void notifyEventHeld(AccessibilityEvent event) {
+        for (AccessibilityDelegate delegate : sDispatchTable.get(event.getEventType())) {
+            if (delegate instanceof ContentChangeCoalescer.HeldEventListener) {
+                ((ContentChangeCoalescer.HeldEventListener) delegate).onEventHeld(event);
+            }
         }
     }
 
     @Override
     protected boolean onKeyEvent(KeyEvent event) {
-        Log.v(TAG, "onKeyEvent: " + event);
+        if (DEBUG)
+            Log.v(TAG, "onKeyEvent: " + event);
         return super.onKeyEvent(event);
     }
 
     @Override
     protected boolean onGesture(int gestureId) {
-        Log.v(TAG, "onGesture: " + gestureId);
+        if (DEBUG)
+            Log.v(TAG, "onGesture: " + gestureId);
         return super.onGesture(gestureId);
     }
 
@@ -89,6 +162,8 @@ public class AccessibilityWatchDogService extends AccessibilityService {
 
     @Override
     public void onDestroy() {
+        // 暂存的事件不再转发，否则延迟的转发会在服务销毁后调用委托
+        mContentChangeCoalescer.clear();
         instance = null;
         super.onDestroy();
     }
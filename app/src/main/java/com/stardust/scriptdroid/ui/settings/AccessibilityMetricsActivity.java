@@ -0,0 +1,71 @@
+package com.stardust.scriptdroid.ui.settings;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.stardust.scriptdroid.R;
+import com.stardust.scriptdroid.service.AccessibilityWatchDogService;
+import com.stardust.scriptdroid.ui.BaseActivity;
+
+/**
+ * Created by Stardust on 2017/6/8.
+ * <p>
+ * 显示无障碍事件处理的统计，每秒刷新一次，用于查找拖慢事件处理的委托。
+ */
+
+public class AccessibilityMetricsActivity extends BaseActivity {
+
+    private static final long REFRESH_INTERVAL = 1000;
+
+    private TextView mMetrics;
+    private final Handler mHandler = new Handler();
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            mMetrics.setText(AccessibilityWatchDogService.getMetrics().report());
+            mHandler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setUpUI();
+    }
+
+    private void setUpUI() {
+        setContentView(R.layout.activity_accessibility_metrics);
+        setToolbarAsBack(getString(R.string.text_accessibility_metrics));
+        mMetrics = $(R.id.metrics);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mHandler.post(mRefresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mRefresh);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_accessibility_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        AccessibilityWatchDogService.getMetrics().reset();
+        mHandler.removeCallbacks(mRefresh);
+        mHandler.post(mRefresh);
+        return super.onOptionsItemSelected(item);
+    }
+}
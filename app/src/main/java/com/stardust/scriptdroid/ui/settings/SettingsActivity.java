@@ -118,6 +118,12 @@ public class SettingsActivity extends BaseActivity {
                             Toast.makeText(getActivity(), R.string.text_already_reset, Toast.LENGTH_SHORT).show();
                         }
                     })
+                    .entry(getString(R.string.text_accessibility_metrics), new Runnable() {
+                        @Override
+                        public void run() {
+                            startActivity(new Intent(getActivity(), AccessibilityMetricsActivity.class));
+                        }
+                    })
                     .entry(getString(R.string.text_check_update), new Runnable() {
                         @Override
                         public void run() {
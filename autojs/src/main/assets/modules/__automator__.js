@@ -96,6 +96,31 @@ module.exports = function(__runtime__, scope){
         }
     }
 
+    automator.setMirrorEnabled = function(enabled){
+        var mirror = __runtime__.getAccessibilityBridge().getUiTreeMirror();
+        if(mirror){
+            mirror.setEnabled(enabled);
+        }
+    }
+
+    automator.getSelectorStats = function(){
+        var list = com.stardust.automator.filter.FilterStats.getAll();
+        var stats = {};
+        for(var i = 0; i < list.size(); i++){
+            var s = list.get(i);
+            stats[s.getKey()] = {
+                samples: s.getSamples(),
+                selectivity: s.getSelectivity(),
+                averageNanos: s.getAverageNanos()
+            };
+        }
+        return stats;
+    }
+
+    automator.resetSelectorStats = function(){
+        com.stardust.automator.filter.FilterStats.resetAll();
+    }
+
     scope.__asGlobal__(__runtime__.automator, ['back', 'home', 'powerDialog', 'notifications', 'quickSettings', 'recents', 'splitScreen']);
     scope.__asGlobal__(automator, ['click', 'longClick', 'press', 'swipe', 'gesture', 'gestures', 'gestureAsync', 'gesturesAsync', 'scrollDown', 'scrollUp', 'input']);
 
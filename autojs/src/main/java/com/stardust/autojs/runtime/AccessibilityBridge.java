@@ -4,8 +4,11 @@ import android.accessibilityservice.AccessibilityService;
 import android.support.annotation.Nullable;
 
 import com.stardust.automator.AccessibilityEventCommandHost;
+import com.stardust.automator.UiTreeMirror;
 import com.stardust.automator.simple_action.SimpleActionPerformHost;
 import com.stardust.view.accessibility.AccessibilityInfoProvider;
+import com.stardust.view.accessibility.WindowChangeObserver;
+import com.stardust.view.accessibility.WindowRootCache;
 
 /**
  * Created by Stardust on 2017/4/2.
@@ -17,6 +20,20 @@ public interface AccessibilityBridge {
 
     AccessibilityInfoProvider getInfoProvider();
 
+    WindowChangeObserver getWindowChangeObserver();
+
+    /**
+     * 由无障碍事件维护的控件树镜像，没有时返回null
+     */
+    @Nullable
+    UiTreeMirror getUiTreeMirror();
+
+    /**
+     * 各个窗口根节点的缓存，Android 5.0以下返回null
+     */
+    @Nullable
+    WindowRootCache getWindowRootCache();
+
     AccessibilityEventCommandHost getCommandHost();
 
     SimpleActionPerformHost getActionPerformHost();
@@ -3,7 +3,10 @@ package com.stardust.autojs.runtime.api;
 import android.accessibilityservice.AccessibilityService;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
@@ -13,12 +16,24 @@ import com.stardust.autojs.runtime.ScriptInterface;
 import com.stardust.autojs.runtime.ScriptInterruptedException;
 import com.stardust.automator.AccessibilityEventCommandHost;
 import com.stardust.automator.ActionArgument;
+import com.stardust.automator.LazyUiObjectCollection;
+import com.stardust.automator.MultiSelector;
+import com.stardust.automator.SelectorCache;
 import com.stardust.automator.UiGlobalSelector;
 import com.stardust.automator.UiObject;
 import com.stardust.automator.UiObjectCollection;
-import com.stardust.automator.filter.DfsFilter;
+import com.stardust.automator.UiSnapshot;
+import com.stardust.automator.UiTreeMirror;
+import com.stardust.automator.filter.IdFilter;
 import com.stardust.util.DeveloperUtils;
+import com.stardust.util.Supplier;
 import com.stardust.view.accessibility.AccessibilityNodeInfoAllocator;
+import com.stardust.view.accessibility.WindowChangeObserver;
+import com.stardust.view.accessibility.WindowRootCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.ACTION_ACCESSIBILITY_FOCUS;
 import static android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.ACTION_ARGUMENT_COLUMN_INT;
@@ -74,9 +89,20 @@ public class UiSelector extends UiGlobalSelector {
     }
 
     private static final String TAG = "UiSelector";
+    private static final long MIN_POLL_INTERVAL = 16;
+    private static final long MAX_POLL_INTERVAL = 1000;
+    private static final SelectorCache RESULT_CACHE = new SelectorCache(16, 500);
 
     private AccessibilityBridge mAccessibilityBridge;
     private AccessibilityNodeInfoAllocator mAllocator = null;
+    private UiObject mScope;
+    private boolean mAllWindows = false;
+    private final Supplier<String> mLatestPackageSupplier = new Supplier<String>() {
+        @Override
+        public String get() {
+            return mAccessibilityBridge.getInfoProvider().getLatestPackage();
+        }
+    };
 
     public UiSelector(AccessibilityBridge accessibilityBridge) {
         mAccessibilityBridge = accessibilityBridge;
@@ -87,22 +113,184 @@ public class UiSelector extends UiGlobalSelector {
         mAllocator = allocator;
     }
 
+    /**
+     * 只在scope的子树中查找(包括scope本身)，而不是整个活动窗口。深度也从scope开始计算。
+     */
+    @ScriptInterface
+    public UiSelector within(UiObject scope) {
+        mScope = scope;
+        return this;
+    }
+
+    /**
+     * 在所有窗口(包括弹窗、输入法、系统对话框和分屏的另一半)中查找，而不只是活动窗口。上层窗口中的控件排在前面。
+     * 需要Android 5.0以上，否则只在活动窗口中查找。
+     */
+    @ScriptInterface
+    public UiSelector allWindows() {
+        mAllWindows = true;
+        addCondition("allWindows");
+        return this;
+    }
+
+    /**
+     * 用选择器表达式添加条件，例如query("button[text^=发送][clickable]")
+     */
+    @ScriptInterface
+    @Override
+    public UiSelector query(String expression) {
+        super.query(expression);
+        return this;
+    }
+
+    /**
+     * 表达式中的id等条件需要由UiSelector创建。进程中只有一个AccessibilityBridge，因此按类缓存的模板可以共用。
+     */
+    @Override
+    protected UiGlobalSelector newTemplate() {
+        return new UiSelector(mAccessibilityBridge);
+    }
+
     @NonNull
     @ScriptInterface
     public UiObjectCollection find() {
+        return find(Integer.MAX_VALUE);
+    }
+
+    @NonNull
+    @ScriptInterface
+    public UiObjectCollection findN(int limit) {
+        return find(limit);
+    }
+
+    @NonNull
+    private UiObjectCollection find(int limit) {
         ensureAccessibilityServiceEnabled();
         if (AutomatorConfig.isUnintendedGuardEnabled() && isRunningPackageSelf()) {
             Log.d(TAG, "isSelfPackage return null");
             return UiObjectCollection.EMPTY;
         }
+        if (mScope != null) {
+            return findOf(mScope, limit);
+        }
+        // 使用自定义allocator时节点由allocator统一回收，不能被其他查找复用。缓存命中时返回的是节点的副本
+        String signature = mAllocator == null ? getSignature() : null;
+        long generation = mAccessibilityBridge.getWindowChangeObserver().getGeneration();
+        if (signature != null) {
+            UiObjectCollection cached = RESULT_CACHE.get(signature, limit, generation);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        UiObjectCollection result = mAllWindows ? findInWindows(limit) : findInActiveWindow(limit);
+        if (result == null) {
+            return UiObjectCollection.EMPTY;
+        }
+        if (signature != null) {
+            RESULT_CACHE.put(signature, limit, generation, result);
+        }
+        return result;
+    }
+
+    /**
+     * 边遍历边返回结果，例如findLazily().click()在找到第一个控件时就点击它，不必等整个窗口遍历完。不使用结果缓存。
+     * 在所有窗口中查找时需要合并各窗口的结果，会先找出所有控件。
+     */
+    @NonNull
+    @ScriptInterface
+    public LazyUiObjectCollection findLazily() {
+        ensureAccessibilityServiceEnabled();
+        if (AutomatorConfig.isUnintendedGuardEnabled() && isRunningPackageSelf()) {
+            return LazyUiObjectCollection.of(UiObjectCollection.EMPTY);
+        }
+        if (mScope != null) {
+            return findLazily(mScope);
+        }
+        if (mAllWindows) {
+            return LazyUiObjectCollection.of(find());
+        }
+        UiSnapshot mirror = mAllocator == null ? getMirrorSnapshot() : null;
+        if (mirror != null) {
+            return findLazily(mirror.getRootObject());
+        }
         AccessibilityService service = mAccessibilityBridge.getService();
-        if (service != null) {
-            AccessibilityNodeInfo root = service.getRootInActiveWindow();
-            if (root != null) {
-                return findOf(UiObject.createRoot(root, mAllocator));
+        AccessibilityNodeInfo root = service == null ? null : service.getRootInActiveWindow();
+        if (root == null) {
+            return LazyUiObjectCollection.of(UiObjectCollection.EMPTY);
+        }
+        return findLazily(mAllocator == null ? UiObject.createRoot(root) : UiObject.createRoot(root, mAllocator));
+    }
+
+    /**
+     * 没有活动窗口时返回null
+     */
+    @Nullable
+    private UiObjectCollection findInActiveWindow(int limit) {
+        UiSnapshot mirror = mAllocator == null ? getMirrorSnapshot() : null;
+        if (mirror != null) {
+            return findOf(mirror, limit);
+        }
+        AccessibilityService service = mAccessibilityBridge.getService();
+        AccessibilityNodeInfo root = service == null ? null : service.getRootInActiveWindow();
+        if (root == null) {
+            return null;
+        }
+        return findInScope(Collections.singletonList(root), limit, false);
+    }
+
+    /**
+     * 在所有窗口中查找，上层窗口的控件排在前面。不支持时只在活动窗口中查找。
+     */
+    @Nullable
+    private UiObjectCollection findInWindows(int limit) {
+        AccessibilityService service = mAccessibilityBridge.getService();
+        WindowRootCache cache = mAccessibilityBridge.getWindowRootCache();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || service == null || cache == null) {
+            return findInActiveWindow(limit);
+        }
+        return findInScope(cache.getRoots(service), limit, true);
+    }
+
+    /**
+     * 镜像开启且已跟上窗口变化时返回镜像，在镜像上查找不产生跨进程调用
+     */
+    @Nullable
+    private UiSnapshot getMirrorSnapshot() {
+        UiTreeMirror mirror = mAccessibilityBridge.getUiTreeMirror();
+        if (mirror == null || !mirror.isEnabled()) {
+            return null;
+        }
+        return mirror.getSnapshot();
+    }
+
+    /**
+     * 依次在各个根节点下查找，查找过程中获取但不在结果中的节点会在查找结束时一并回收。
+     *
+     * @param ownsRoots roots是否是交给这里负责的副本(如{@link WindowRootCache#getRoots}的结果)。是时找够limit个控件后
+     *                  剩下没有查找的根节点会被回收
+     */
+    private UiObjectCollection findInScope(List<AccessibilityNodeInfo> roots, int limit, boolean ownsRoots) {
+        AccessibilityNodeInfoAllocator allocator = mAllocator == null ? new AccessibilityNodeInfoAllocator() : mAllocator;
+        AccessibilityNodeInfoAllocator.Scope scope = allocator.openScope();
+        int visited = 0;
+        try {
+            List<UiObject> list = new ArrayList<>();
+            for (; visited < roots.size() && list.size() < limit; visited++) {
+                UiObjectCollection result = findOf(UiObject.createRoot(roots.get(visited), allocator), limit - list.size());
+                for (int i = 0; i < result.size(); i++) {
+                    scope.promote(result.get(i));
+                    list.add(result.get(i));
+                }
+            }
+            return UiObjectCollection.of(list);
+        } finally {
+            scope.close();
+            if (ownsRoots) {
+                for (int i = visited; i < roots.size(); i++) {
+                    roots.get(i).recycle();
+                }
             }
         }
-        return UiObjectCollection.EMPTY;
     }
 
     private void ensureAccessibilityServiceEnabled() {
@@ -117,15 +305,57 @@ public class UiSelector extends UiGlobalSelector {
     @ScriptInterface
     @NonNull
     public UiObjectCollection untilFind() {
-        UiObjectCollection uiObjectCollection;
-        do {
+        return untilFind(Integer.MAX_VALUE, -1);
+    }
+
+    /**
+     * 等待直到找到符合条件的控件或超时。超时返回空集合。
+     */
+    @ScriptInterface
+    @NonNull
+    public UiObjectCollection untilFind(long timeout) {
+        return untilFind(Integer.MAX_VALUE, timeout);
+    }
+
+    /**
+     * 只在窗口内容变化后才重新查找。由于事件可能丢失，等待超过轮询间隔时也会重新查找，
+     * 窗口一直没有变化时轮询间隔按指数增长。
+     */
+    @NonNull
+    private UiObjectCollection untilFind(int limit, long timeout) {
+        WindowChangeObserver observer = mAccessibilityBridge.getWindowChangeObserver();
+        long deadline = timeout < 0 ? Long.MAX_VALUE : SystemClock.uptimeMillis() + timeout;
+        long pollInterval = MIN_POLL_INTERVAL;
+        while (true) {
             if (Thread.currentThread().isInterrupted()) {
                 Log.d(TAG, "Thread isInterrupted");
                 throw new ScriptInterruptedException();
             }
-            uiObjectCollection = find();
-        } while (uiObjectCollection.empty());
-        return uiObjectCollection;
+            long generation = observer.getGeneration();
+            UiObjectCollection uiObjectCollection = find(limit);
+            if (uiObjectCollection.nonEmpty()) {
+                return uiObjectCollection;
+            }
+            long remaining = deadline - SystemClock.uptimeMillis();
+            if (remaining <= 0) {
+                return UiObjectCollection.EMPTY;
+            }
+            pollInterval = waitForWindowChange(observer, generation, Math.min(pollInterval, remaining));
+        }
+    }
+
+    /**
+     * 等待窗口变化，返回下一次的轮询间隔
+     */
+    private long waitForWindowChange(WindowChangeObserver observer, long generation, long pollInterval) {
+        try {
+            if (observer.waitForChange(generation, pollInterval)) {
+                return MIN_POLL_INTERVAL;
+            }
+            return Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            throw new ScriptInterruptedException();
+        }
     }
 
     @ScriptInterface
@@ -135,26 +365,87 @@ public class UiSelector extends UiGlobalSelector {
 
     @ScriptInterface
     public boolean exists() {
-        UiObjectCollection collection = find();
+        UiObjectCollection collection = find(1);
         return collection.nonEmpty();
     }
 
+    /**
+     * 在一次遍历中依次判断多个选择器，返回第一个找到控件的选择器及其找到的控件，都没有找到时返回null。
+     * 相当于if (a.exists()) ... else if (b.exists()) ...，但只遍历一次控件树。查找范围由本选择器的within决定，
+     * 本选择器自身的筛选条件不参与匹配。
+     */
+    @ScriptInterface
+    @Nullable
+    public MultiSelector.Match any(UiSelector... selectors) {
+        return match(new MultiSelector(selectors));
+    }
+
+    /**
+     * 与{@link #any(UiSelector...)}相同，但会等待直到有一个选择器找到控件为止。
+     */
+    @ScriptInterface
+    @NonNull
+    public MultiSelector.Match matchFirst(UiSelector... selectors) {
+        MultiSelector multiSelector = new MultiSelector(selectors);
+        WindowChangeObserver observer = mAccessibilityBridge.getWindowChangeObserver();
+        long pollInterval = MIN_POLL_INTERVAL;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ScriptInterruptedException();
+            }
+            long generation = observer.getGeneration();
+            MultiSelector.Match match = match(multiSelector);
+            if (match != null) {
+                return match;
+            }
+            pollInterval = waitForWindowChange(observer, generation, pollInterval);
+        }
+    }
+
+    @Nullable
+    private MultiSelector.Match match(MultiSelector multiSelector) {
+        ensureAccessibilityServiceEnabled();
+        if (AutomatorConfig.isUnintendedGuardEnabled() && isRunningPackageSelf()) {
+            return null;
+        }
+        if (mScope != null) {
+            return multiSelector.match(mScope, 1);
+        }
+        UiSnapshot mirror = mAllocator == null ? getMirrorSnapshot() : null;
+        if (mirror != null) {
+            return multiSelector.match(mirror.getRootObject(), 1);
+        }
+        AccessibilityService service = mAccessibilityBridge.getService();
+        AccessibilityNodeInfo root = service == null ? null : service.getRootInActiveWindow();
+        if (root == null) {
+            return null;
+        }
+        AccessibilityNodeInfoAllocator allocator = mAllocator == null ? new AccessibilityNodeInfoAllocator() : mAllocator;
+        AccessibilityNodeInfoAllocator.Scope scope = allocator.openScope();
+        try {
+            MultiSelector.Match match = multiSelector.match(UiObject.createRoot(root, allocator), 1);
+            if (match != null) {
+                scope.promote(match.getNode());
+            }
+            return match;
+        } finally {
+            scope.close();
+        }
+    }
+
     @NonNull
     public UiObject untilFindOne() {
-        UiObjectCollection collection = untilFind();
+        UiObjectCollection collection = untilFind(1, -1);
         return new UiObject(collection.get(0).getInfo());
     }
 
+    /**
+     * id不含包名时按当前应用的包名补全
+     */
     @ScriptInterface
     public UiSelector id(final String id) {
         if (!id.contains(":")) {
-            addFilter(new DfsFilter() {
-                @Override
-                protected boolean isIncluded(UiObject nodeInfo) {
-                    String fullId = mAccessibilityBridge.getInfoProvider().getLatestPackage() + ":id/" + id;
-                    return fullId.equals(nodeInfo.getViewIdResourceName());
-                }
-            });
+            addFilter(IdFilter.equals(id, mLatestPackageSupplier), "id", id);
         } else {
             super.id(id);
         }
@@ -19,6 +19,7 @@ import com.stardust.automator.simple_action.ActionTarget;
 import com.stardust.automator.simple_action.SimpleAction;
 import com.stardust.util.DeveloperUtils;
 import com.stardust.util.ScreenMetrics;
+import com.stardust.view.accessibility.AccessibilityNodeInfoAllocator;
 
 /**
  * Created by Stardust on 2017/4/2.
@@ -244,7 +245,14 @@ public class SimpleActionAutomator {
         if (root == null)
             return false;
         Log.v(TAG, "performAction: " + simpleAction + " root = " + root);
-        return simpleAction.perform(UiObject.createRoot(root));
+        // 操作结束后回收操作过程中获取的所有节点
+        AccessibilityNodeInfoAllocator allocator = new AccessibilityNodeInfoAllocator();
+        AccessibilityNodeInfoAllocator.Scope scope = allocator.openScope();
+        try {
+            return simpleAction.perform(UiObject.createRoot(root, allocator));
+        } finally {
+            scope.close();
+        }
     }
 
     private boolean isRunningPackageSelf() {
@@ -3,18 +3,29 @@ package com.stardust.automator;
 import android.accessibilityservice.AccessibilityService;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
-import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.stardust.view.accessibility.AccessibilityDelegate;
 
-import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by Stardust on 2017/3/9.
+ * <p>
+ * 在下一个无障碍事件到来时执行命令。命令放入无锁队列，提交后返回{@link Future}，可以限时等待或取消；
+ * 等待由FutureTask实现，不会因为命令在开始等待之前就执行完而错过唤醒。
  */
 
 public class AccessibilityEventCommandHost implements AccessibilityDelegate {
@@ -43,28 +54,106 @@ public class AccessibilityEventCommandHost implements AccessibilityDelegate {
 
     }
 
+    private static class CommandCall implements Callable<Void> {
+
+        private final Command mCommand;
+        private volatile AccessibilityService mService;
+        private volatile AccessibilityEvent mEvent;
+        // 线程池模式下事件的副本。执行命令或取消命令的一方通过getAndSet(null)取走并回收，保证只回收一次
+        private final AtomicReference<AccessibilityEvent> mEventCopy = new AtomicReference<>();
+
+        CommandCall(Command command) {
+            mCommand = command;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            AccessibilityEvent copy = mEventCopy.getAndSet(null);
+            try {
+                if (mCommand.isValid()) {
+                    if (DEBUG)
+                        Log.v(TAG, "executing " + mCommand);
+                    mCommand.execute(mService, copy != null ? copy : mEvent);
+                }
+            } finally {
+                if (copy != null) {
+                    copy.recycle();
+                }
+            }
+            return null;
+        }
+
+        void recycleEventCopy() {
+            AccessibilityEvent copy = mEventCopy.getAndSet(null);
+            if (copy != null) {
+                copy.recycle();
+            }
+        }
+    }
+
+    /**
+     * 取消时命令被置为无效。不会中断正在执行的命令，因为在单线程模式下执行命令的是无障碍服务的线程。
+     * 在交给线程池之后、开始执行之前被取消时，FutureTask不会再调用call()，事件副本在done()中回收。
+     */
+    private static class CommandFuture extends FutureTask<Void> {
+
+        private final CommandCall mCall;
+
+        CommandFuture(CommandCall call) {
+            super(call);
+            mCall = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            mCall.mCommand.setValid(false);
+            return super.cancel(false);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                mCall.recycleEventCopy();
+            }
+        }
+    }
+
     private static final String TAG = "CommandHostDelegate";
+    private static final boolean DEBUG = false;
+    private static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long POOL_KEEP_ALIVE_SECONDS = 30;
 
     public static final int RUN_MODE_SINGLE_THREAD = 0;
     public static final int RUN_MODE_THREAD_POOL = 1;
-    public static final int RUN_MODE_NEW_THREAD_EVERY_TIME = 2;
 
 
-    private final Queue<Command> mCommands = new LinkedList<>();
-    private Executor mExecutor = Executors.newSingleThreadExecutor();
-    private int mRunMode = RUN_MODE_THREAD_POOL;
+    private final Queue<CommandFuture> mCommands = new ConcurrentLinkedQueue<>();
+    private final ThreadPoolExecutor mExecutor;
+    private volatile int mRunMode = RUN_MODE_THREAD_POOL;
+
+    public AccessibilityEventCommandHost() {
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, TAG + "-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
 
     @Override
     public boolean onAccessibilityEvent(final AccessibilityService service, final AccessibilityEvent event) {
-        synchronized (mCommands) {
-            if (!mCommands.isEmpty()) {
-                Log.v(TAG, "will execute " + mCommands.size() + " commands");
-            }
-            while (!mCommands.isEmpty()) {
-                final Command command = mCommands.poll();
-                if (command.isValid()) {
-                    executeCommand(command, service, event);
-                }
+        // 只取走本次事件之前提交的命令，执行期间新提交的命令等待下一个事件
+        CommandFuture future;
+        int count = mCommands.size();
+        while (count-- > 0 && (future = mCommands.poll()) != null) {
+            if (!future.isDone() && future.mCall.mCommand.isValid()) {
+                executeCommand(future, service, event);
             }
         }
         return false;
@@ -72,47 +161,85 @@ public class AccessibilityEventCommandHost implements AccessibilityDelegate {
 
     @Override
     public Set<Integer> getEventTypes() {
-        return null;
+        return ALL_EVENT_TYPES;
     }
 
-    private void executeCommand(final Command command, final AccessibilityService service, final AccessibilityEvent event) {
-        final Runnable r = new Runnable() {
-            @Override
-            public void run() {
-                if (!command.isValid()) {
+    private void executeCommand(CommandFuture future, AccessibilityService service, AccessibilityEvent event) {
+        CommandCall call = future.mCall;
+        call.mService = service;
+        if (mRunMode == RUN_MODE_SINGLE_THREAD) {
+            call.mEvent = event;
+            future.run();
+        } else {
+            // 分发结束后事件会被系统回收，需要复制一份
+            call.mEvent = null;
+            if (event != null) {
+                call.mEventCopy.set(AccessibilityEvent.obtain(event));
+                // 在放入副本之前就被取消时done()已经执行过，副本由这里回收
+                if (future.isCancelled()) {
+                    call.recycleEventCopy();
                     return;
                 }
-                Log.v(TAG, "executing " + command);
-                command.execute(service, event);
-                synchronized (command) {
-                    command.notify();
-                }
             }
-        };
-        if (mRunMode == RUN_MODE_SINGLE_THREAD) {
-            r.run();
-        } else if (mRunMode == RUN_MODE_NEW_THREAD_EVERY_TIME) {
-            new Thread(r).start();
-        } else {
-            mExecutor.execute(r);
+            mExecutor.execute(future);
         }
     }
 
+    /**
+     * 提交命令，在下一个无障碍事件到来时执行。
+     *
+     * @return 命令执行完成时完成的Future。取消后命令不会再执行；命令抛出的异常由get()抛出
+     */
+    public Future<Void> submit(Command command) {
+        command.setValid(true);
+        CommandFuture future = new CommandFuture(new CommandCall(command));
+        mCommands.offer(future);
+        return future;
+    }
 
     public void executeAndWaitForEvent(Command command) {
-        synchronized (mCommands) {
-            mCommands.offer(command);
+        Future<Void> future = submit(command);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
-        synchronized (command) {
-            try {
-                command.wait();
-            } catch (InterruptedException e) {
-                command.setValid(false);
-                throw new RuntimeException(e);
-            }
+    }
+
+    /**
+     * 与{@link #executeAndWaitForEvent(Command)}相同，但最多等待timeout。超时后命令被取消。
+     *
+     * @return 命令是否在超时前执行完成
+     */
+    public boolean executeAndWaitForEvent(Command command, long timeout, TimeUnit unit) {
+        Future<Void> future = submit(command);
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            return false;
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
     }
 
+    /**
+     * 等待执行的命令数，包括已取消但还未被移出队列的命令
+     */
+    public int getPendingCount() {
+        return mCommands.size();
+    }
+
+    /**
+     * @param mode {@link #RUN_MODE_SINGLE_THREAD}在无障碍服务的线程中执行命令；{@link #RUN_MODE_THREAD_POOL}在线程数有限的线程池中执行
+     */
     public void setRunMode(int mode) {
         mRunMode = mode;
     }
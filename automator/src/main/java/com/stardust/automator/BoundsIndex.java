@@ -0,0 +1,229 @@
+package com.stardust.automator;
+
+import java.util.Arrays;
+
+/**
+ * Created by Stardust on 2017/5/26.
+ * <p>
+ * 控件边界的空间索引，是一棵自底向上打包的静态R树。随快照构建一次，按区域查找的耗时约为O(log n + k)。
+ * 返回的是快照中的节点序号，按文档顺序(先序)排列。
+ */
+
+public class BoundsIndex {
+
+    public static final int TYPE_EQUALS = 0;
+    public static final int TYPE_INSIDE = 1;
+    public static final int TYPE_CONTAINS = 2;
+
+    private static final int NODE_SIZE = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] mBounds;
+    private final int mCount;
+    // 每个索引节点的外接矩形(已规整为left <= right, top <= bottom)
+    private final int[] mBoxes;
+    // 叶子为快照中的节点序号，内部节点为第一个子节点的位置
+    private final int[] mIndices;
+    // 每一层的结束位置，第0层为叶子
+    private final int[] mLevelEnds;
+
+    /**
+     * @param bounds 每个节点依次为left, top, right, bottom
+     */
+    BoundsIndex(int[] bounds, int count) {
+        mBounds = bounds;
+        mCount = count;
+        int total = count;
+        int levels = 1;
+        int n = count;
+        while (n > 1) {
+            n = (n + NODE_SIZE - 1) / NODE_SIZE;
+            total += n;
+            levels++;
+        }
+        mBoxes = new int[total * 4];
+        mIndices = new int[total];
+        mLevelEnds = new int[count == 0 ? 0 : levels];
+        if (count == 0) {
+            return;
+        }
+        int[] order = sortTiles();
+        for (int i = 0; i < count; i++) {
+            setLeaf(i, order[i]);
+        }
+        mLevelEnds[0] = count;
+        int levelStart = 0;
+        int levelEnd = count;
+        int pos = count;
+        int level = 1;
+        while (levelEnd - levelStart > 1) {
+            for (int i = levelStart; i < levelEnd; i += NODE_SIZE) {
+                setParent(pos++, i, Math.min(i + NODE_SIZE, levelEnd));
+            }
+            mLevelEnds[level++] = pos;
+            levelStart = levelEnd;
+            levelEnd = pos;
+        }
+    }
+
+    /**
+     * Sort-Tile-Recursive：先按中心横坐标分成若干竖条，每条内再按中心纵坐标排序，使相邻的叶子在空间上也相邻。
+     */
+    private int[] sortTiles() {
+        long[] keys = new long[mCount];
+        for (int i = 0; i < mCount; i++) {
+            keys[i] = pack(center(i * 4), i);
+        }
+        Arrays.sort(keys);
+        int leafNodes = (mCount + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leafNodes)) * NODE_SIZE;
+        for (int start = 0; start < mCount; start += sliceSize) {
+            int end = Math.min(start + sliceSize, mCount);
+            for (int i = start; i < end; i++) {
+                int item = (int) keys[i];
+                keys[i] = pack(center(item * 4 + 1), item);
+            }
+            Arrays.sort(keys, start, end);
+        }
+        int[] order = new int[mCount];
+        for (int i = 0; i < mCount; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private int center(int offset) {
+        return (int) (((long) mBounds[offset] + mBounds[offset + 2]) >> 1);
+    }
+
+    private static long pack(int key, int item) {
+        return ((long) key << 32) | item;
+    }
+
+    private void setLeaf(int pos, int item) {
+        int l = mBounds[item * 4];
+        int t = mBounds[item * 4 + 1];
+        int r = mBounds[item * 4 + 2];
+        int b = mBounds[item * 4 + 3];
+        mBoxes[pos * 4] = Math.min(l, r);
+        mBoxes[pos * 4 + 1] = Math.min(t, b);
+        mBoxes[pos * 4 + 2] = Math.max(l, r);
+        mBoxes[pos * 4 + 3] = Math.max(t, b);
+        mIndices[pos] = item;
+    }
+
+    private void setParent(int pos, int start, int end) {
+        int l = Integer.MAX_VALUE, t = Integer.MAX_VALUE, r = Integer.MIN_VALUE, b = Integer.MIN_VALUE;
+        for (int i = start; i < end; i++) {
+            l = Math.min(l, mBoxes[i * 4]);
+            t = Math.min(t, mBoxes[i * 4 + 1]);
+            r = Math.max(r, mBoxes[i * 4 + 2]);
+            b = Math.max(b, mBoxes[i * 4 + 3]);
+        }
+        mBoxes[pos * 4] = l;
+        mBoxes[pos * 4 + 1] = t;
+        mBoxes[pos * 4 + 2] = r;
+        mBoxes[pos * 4 + 3] = b;
+        mIndices[pos] = start;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * 查找边界满足条件的节点，语义与Rect相同：TYPE_EQUALS为边界相等，TYPE_INSIDE为节点在(l, t, r, b)内，
+     * TYPE_CONTAINS为节点包含(l, t, r, b)。
+     */
+    public int[] find(int l, int t, int r, int b, int type) {
+        return find(l, t, r, b, type, 0, mCount);
+    }
+
+    /**
+     * 与{@link #find(int, int, int, int, int)}相同，但只返回序号在[from, to)中的节点，即某个节点的子树。
+     */
+    public int[] find(int l, int t, int r, int b, int type, int from, int to) {
+        if (mCount == 0) {
+            return EMPTY;
+        }
+        int ql = Math.min(l, r), qt = Math.min(t, b), qr = Math.max(l, r), qb = Math.max(t, b);
+        int[] result = new int[8];
+        int size = 0;
+        int root = mIndices.length - 1;
+        if (!intersects(root, ql, qt, qr, qb)) {
+            return EMPTY;
+        }
+        int[] stack = new int[mLevelEnds.length * NODE_SIZE + 1];
+        int[] levels = new int[stack.length];
+        int sp = 0;
+        if (mLevelEnds.length == 1) {
+            // 只有一个节点，根即叶子
+            stack[sp] = root;
+            levels[sp++] = -1;
+        } else {
+            stack[sp] = root;
+            levels[sp++] = mLevelEnds.length - 1;
+        }
+        while (sp > 0) {
+            sp--;
+            int pos = stack[sp];
+            int level = levels[sp];
+            if (level < 0) {
+                int item = mIndices[pos];
+                if (item >= from && item < to && matches(item, l, t, r, b, type)) {
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = item;
+                }
+                continue;
+            }
+            int start = mIndices[pos];
+            int end = Math.min(start + NODE_SIZE, mLevelEnds[level - 1]);
+            for (int child = start; child < end; child++) {
+                if (intersects(child, ql, qt, qr, qb)) {
+                    stack[sp] = child;
+                    levels[sp++] = level == 1 ? -1 : level - 1;
+                }
+            }
+        }
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 返回包含坐标(x, y)的最上层节点，即包含该点的节点中文档顺序最后的一个。没有时返回-1。
+     */
+    public int hitTest(int x, int y) {
+        int[] found = find(x, y, x + 1, y + 1, TYPE_CONTAINS);
+        return found.length == 0 ? -1 : found[found.length - 1];
+    }
+
+    private boolean intersects(int pos, int l, int t, int r, int b) {
+        int offset = pos * 4;
+        return mBoxes[offset] <= r && mBoxes[offset + 2] >= l && mBoxes[offset + 1] <= b && mBoxes[offset + 3] >= t;
+    }
+
+    private boolean matches(int item, int l, int t, int r, int b, int type) {
+        int offset = item * 4;
+        return matches(type, l, t, r, b, mBounds[offset], mBounds[offset + 1], mBounds[offset + 2], mBounds[offset + 3]);
+    }
+
+    /**
+     * 判断节点边界(nl, nt, nr, nb)与给定区域(l, t, r, b)是否满足type的关系，与Rect的equals/contains结果一致。
+     */
+    public static boolean matches(int type, int l, int t, int r, int b, int nl, int nt, int nr, int nb) {
+        switch (type) {
+            case TYPE_EQUALS:
+                return l == nl && t == nt && r == nr && b == nb;
+            case TYPE_INSIDE:
+                return l < r && t < b && l <= nl && t <= nt && r >= nr && b >= nb;
+            case TYPE_CONTAINS:
+                return nl < nr && nt < nb && nl <= l && nt <= t && nr >= r && nb >= b;
+            default:
+                throw new IllegalArgumentException("type = " + type);
+        }
+    }
+
+}
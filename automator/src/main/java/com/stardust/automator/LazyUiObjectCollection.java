@@ -0,0 +1,244 @@
+package com.stardust.automator;
+
+import android.support.annotation.Keep;
+import android.support.annotation.Nullable;
+
+import com.stardust.util.Consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.ACTION_CLICK;
+import static android.support.v4.view.accessibility.AccessibilityNodeInfoCompat.ACTION_LONG_CLICK;
+
+/**
+ * Created by Stardust on 2017/6/5.
+ * <p>
+ * 边遍历边产生结果的控件集合。forEach, click等操作在找到第一个控件时就开始执行，不必等整棵树遍历完；
+ * first和take在找够控件后立即停止遍历。
+ * <p>
+ * 集合只能遍历一次。遍历结束或调用close()后，游标持有的、尚未访问的节点会被回收。被filter拒绝的节点交还给游标回收。
+ */
+
+public class LazyUiObjectCollection {
+
+    @Keep
+    public interface Predicate {
+
+        boolean test(UiObject node);
+    }
+
+    public static LazyUiObjectCollection of(UiObjectCursor cursor) {
+        return new LazyUiObjectCollection(cursor);
+    }
+
+    /**
+     * 包装已经找到的结果，结果中的控件归返回的集合所有
+     */
+    public static LazyUiObjectCollection of(UiObjectCollection collection) {
+        return of(collection, null);
+    }
+
+    /**
+     * 包装从start开始查找的结果。start归调用者所有，即使在结果中也不会被回收。
+     */
+    public static LazyUiObjectCollection of(final UiObjectCollection collection, @Nullable final UiObject start) {
+        return new LazyUiObjectCollection(new UiObjectCursor() {
+
+            private int mNext = 0;
+
+            @Nullable
+            @Override
+            public UiObject next() {
+                return mNext < collection.size() ? collection.get(mNext++) : null;
+            }
+
+            @Override
+            public void release(UiObject node) {
+                if (node != start) {
+                    node.recycle();
+                }
+            }
+
+            @Override
+            public void close() {
+                for (int i = mNext; i < collection.size(); i++) {
+                    release(collection.get(i));
+                }
+                mNext = collection.size();
+            }
+        });
+    }
+
+    private final UiObjectCursor mCursor;
+    private boolean mClosed;
+
+    private LazyUiObjectCollection(UiObjectCursor cursor) {
+        mCursor = cursor;
+    }
+
+    /**
+     * 返回下一个控件，没有更多控件时关闭集合并返回null。
+     */
+    @Nullable
+    public UiObject next() {
+        if (mClosed)
+            return null;
+        UiObject node = mCursor.next();
+        if (node == null) {
+            close();
+        }
+        return node;
+    }
+
+    /**
+     * 对找到的每个控件依次执行consumer，返回控件的个数。
+     */
+    public int forEach(Consumer<UiObject> consumer) {
+        int count = 0;
+        try {
+            UiObject node;
+            while ((node = next()) != null) {
+                consumer.accept(node);
+                count++;
+            }
+        } finally {
+            close();
+        }
+        return count;
+    }
+
+    /**
+     * 返回第一个控件并停止遍历，没有找到时返回null。
+     */
+    @Nullable
+    public UiObject first() {
+        try {
+            return next();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 返回只包含前n个控件的集合，找够n个后停止遍历。
+     */
+    public LazyUiObjectCollection take(final int n) {
+        return new LazyUiObjectCollection(new UiObjectCursor() {
+
+            private int mTaken = 0;
+
+            @Nullable
+            @Override
+            public UiObject next() {
+                if (mTaken >= n) {
+                    LazyUiObjectCollection.this.close();
+                    return null;
+                }
+                UiObject node = LazyUiObjectCollection.this.next();
+                if (node != null) {
+                    mTaken++;
+                }
+                return node;
+            }
+
+            @Override
+            public void release(UiObject node) {
+                LazyUiObjectCollection.this.release(node);
+            }
+
+            @Override
+            public void close() {
+                LazyUiObjectCollection.this.close();
+            }
+        });
+    }
+
+    /**
+     * 返回只包含满足predicate的控件的集合。
+     */
+    public LazyUiObjectCollection filter(final Predicate predicate) {
+        return new LazyUiObjectCollection(new UiObjectCursor() {
+
+            @Nullable
+            @Override
+            public UiObject next() {
+                UiObject node;
+                while ((node = LazyUiObjectCollection.this.next()) != null) {
+                    if (predicate.test(node)) {
+                        return node;
+                    }
+                    // 不满足的节点的子树可能还在遍历中，交还给游标，由它决定何时回收
+                    LazyUiObjectCollection.this.release(node);
+                }
+                return null;
+            }
+
+            @Override
+            public void release(UiObject node) {
+                LazyUiObjectCollection.this.release(node);
+            }
+
+            @Override
+            public void close() {
+                LazyUiObjectCollection.this.close();
+            }
+        });
+    }
+
+    /**
+     * 找出剩下的所有控件
+     */
+    public UiObjectCollection toCollection() {
+        final List<UiObject> list = new ArrayList<>();
+        forEach(new Consumer<UiObject>() {
+            @Override
+            public void accept(UiObject node) {
+                list.add(node);
+            }
+        });
+        return UiObjectCollection.of(list);
+    }
+
+    /**
+     * 对每个找到的控件执行action，所有控件都执行成功时返回true。
+     */
+    public boolean performAction(final int action) {
+        final boolean[] fail = {false};
+        forEach(new Consumer<UiObject>() {
+            @Override
+            public void accept(UiObject node) {
+                if (!node.performAction(action)) {
+                    fail[0] = true;
+                }
+            }
+        });
+        return !fail[0];
+    }
+
+    public boolean click() {
+        return performAction(ACTION_CLICK);
+    }
+
+    public boolean longClick() {
+        return performAction(ACTION_LONG_CLICK);
+    }
+
+    /**
+     * 把next()返回的、不再需要的控件交还给集合回收
+     */
+    public void release(UiObject node) {
+        mCursor.release(node);
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    public void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+        mCursor.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.stardust.automator;
+
+import android.support.annotation.Nullable;
+
+import com.stardust.automator.filter.BatchFilter;
+import com.stardust.automator.filter.DfsFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ * <p>
+ * 在一次遍历中同时判断多个选择器，返回按参数顺序第一个找到控件的选择器及其结果，相当于依次调用exists()的if/else if。
+ * <p>
+ * 只有一个筛选阶段且没有遍历限制的选择器在同一次遍历中判断，其中能用NativeQuery(例如按id查找)回答的选择器先用查找结果判断，
+ * 不参与遍历；其他选择器在遍历后单独查找。
+ */
+
+public class MultiSelector {
+
+    public static class Match {
+
+        private final int mIndex;
+        private final UiGlobalSelector mSelector;
+        private final UiObjectCollection mResult;
+
+        Match(int index, UiGlobalSelector selector, UiObjectCollection result) {
+            mIndex = index;
+            mSelector = selector;
+            mResult = result;
+        }
+
+        /**
+         * 匹配的选择器在参数中的位置，从0开始
+         */
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public UiGlobalSelector getSelector() {
+            return mSelector;
+        }
+
+        public UiObjectCollection getResult() {
+            return mResult;
+        }
+
+        public UiObject getNode() {
+            return mResult.get(0);
+        }
+
+        @Override
+        public String toString() {
+            return "Match{" +
+                    "mIndex=" + mIndex +
+                    ", mSelector=" + mSelector +
+                    ", mResult=" + mResult.size() +
+                    '}';
+        }
+    }
+
+    private final UiGlobalSelector[] mSelectors;
+
+    public MultiSelector(UiGlobalSelector... selectors) {
+        mSelectors = selectors;
+    }
+
+    public int size() {
+        return mSelectors.length;
+    }
+
+    /**
+     * 在以root为根的控件树中查找，每个选择器最多找limit个控件。没有选择器找到控件时返回null。
+     * 不属于返回结果的节点会被回收(root除外)。
+     */
+    @Nullable
+    public Match match(UiObject root, int limit) {
+        int n = mSelectors.length;
+        DfsFilter[] filters = new DfsFilter[n];
+        for (int i = 0; i < n; i++) {
+            filters[i] = mSelectors[i].compileSingleFilter();
+        }
+        List<List<UiObject>> found = BatchFilter.filter(root, filters, limit);
+        int winner = n;
+        List<UiObject> result = null;
+        for (int i = 0; i < n; i++) {
+            if (filters[i] != null) {
+                if (!found.get(i).isEmpty()) {
+                    winner = i;
+                    result = found.get(i);
+                    break;
+                }
+                continue;
+            }
+            UiObjectCollection collection = mSelectors[i].findOf(root, limit);
+            if (collection.nonEmpty()) {
+                winner = i;
+                result = toList(collection);
+                break;
+            }
+        }
+        recycleOthers(root, found, result);
+        if (winner == n) {
+            return null;
+        }
+        return new Match(winner, mSelectors[winner], UiObjectCollection.of(result));
+    }
+
+    private static List<UiObject> toList(UiObjectCollection collection) {
+        List<UiObject> list = new ArrayList<>(collection.size());
+        for (int i = 0; i < collection.size(); i++) {
+            list.add(collection.get(i));
+        }
+        return list;
+    }
+
+    private static void recycleOthers(UiObject root, List<List<UiObject>> found, @Nullable List<UiObject> result) {
+        Set<UiObject> kept = Collections.newSetFromMap(new IdentityHashMap<UiObject, Boolean>());
+        kept.add(root);
+        if (result != null) {
+            kept.addAll(result);
+        }
+        for (List<UiObject> list : found) {
+            for (UiObject node : list) {
+                // 同一个节点可能出现在多个选择器的结果中，只回收一次
+                if (kept.add(node)) {
+                    node.recycle();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.stardust.automator;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.stardust.view.accessibility.AccessibilityNodeInfoAllocator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Stardust on 2017/5/24.
+ * <p>
+ * 缓存最近的选择器查找结果。以选择器签名为键，并记录查找时的窗口代数，窗口一旦变化则整个缓存失效。
+ * 为防止事件丢失时返回过期结果，缓存项在maxAge毫秒后也会失效。
+ * <p>
+ * 缓存保存的是节点的副本，每次命中都返回新复制的节点和新的分配器，调用者可以随意使用和回收，互不影响。
+ * 空结果不缓存，以免在没有事件的情况下出现的控件被隐藏。
+ */
+
+public class SelectorCache {
+
+    private static class Entry {
+
+        final List<UiObject> nodes;
+        final int limit;
+        final long createdMillis;
+
+        Entry(List<UiObject> nodes, int limit) {
+            this.nodes = nodes;
+            this.limit = limit;
+            this.createdMillis = SystemClock.uptimeMillis();
+        }
+
+        /**
+         * 结果数量小于查找时的limit，说明已经是所有符合条件的控件。
+         */
+        boolean isComplete() {
+            return nodes.size() < limit;
+        }
+
+        void recycle() {
+            for (UiObject node : nodes) {
+                node.recycle();
+            }
+        }
+    }
+
+    private final Map<String, Entry> mEntries;
+    private final long mMaxAge;
+    private long mGeneration = -1;
+
+    public SelectorCache(final int maxSize, long maxAge) {
+        mEntries = new LinkedHashMap<String, Entry>(4, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().recycle();
+                    return true;
+                }
+                return false;
+            }
+        };
+        mMaxAge = maxAge;
+    }
+
+    @Nullable
+    public synchronized UiObjectCollection get(String signature, int limit, long generation) {
+        if (generation != mGeneration) {
+            invalidate(generation);
+            return null;
+        }
+        Entry entry = mEntries.get(signature);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.uptimeMillis() - entry.createdMillis > mMaxAge) {
+            mEntries.remove(signature).recycle();
+            return null;
+        }
+        if (entry.limit < limit && !entry.isComplete()) {
+            return null;
+        }
+        int size = Math.min(limit, entry.nodes.size());
+        AccessibilityNodeInfoAllocator allocator = new AccessibilityNodeInfoAllocator();
+        List<UiObject> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(copy(entry.nodes.get(i), allocator));
+        }
+        return UiObjectCollection.of(list);
+    }
+
+    /**
+     * 保存result中节点的副本，result本身仍归调用者所有。结果为空或含有不是真实节点的控件(例如快照中的节点)时不缓存。
+     *
+     * @param generation 开始查找之前的窗口代数。查找过程中窗口发生变化时，这个结果在下一次get时就会失效
+     */
+    public synchronized void put(String signature, int limit, long generation, UiObjectCollection result) {
+        if (generation != mGeneration) {
+            invalidate(generation);
+        }
+        if (result.size() == 0) {
+            return;
+        }
+        for (int i = 0; i < result.size(); i++) {
+            if (!isCacheable(result.get(i))) {
+                return;
+            }
+        }
+        List<UiObject> nodes = new ArrayList<>(result.size());
+        for (int i = 0; i < result.size(); i++) {
+            nodes.add(copy(result.get(i), null));
+        }
+        Entry old = mEntries.put(signature, new Entry(nodes, limit));
+        if (old != null) {
+            old.recycle();
+        }
+    }
+
+    /**
+     * 快照中的节点是UiObject的子类，其属性来自快照而不是真实节点，不能用节点副本代替。
+     */
+    protected boolean isCacheable(UiObject object) {
+        return object.getClass() == UiObject.class && object.getInfo() instanceof AccessibilityNodeInfo;
+    }
+
+    /**
+     * 复制一个真实节点，副本由返回的UiObject持有，需要单独回收。
+     */
+    protected UiObject copy(UiObject object, @Nullable AccessibilityNodeInfoAllocator allocator) {
+        return new UiObject(AccessibilityNodeInfo.obtain((AccessibilityNodeInfo) object.getInfo()), allocator);
+    }
+
+    private void invalidate(long generation) {
+        clearEntries();
+        mGeneration = generation;
+    }
+
+    private void clearEntries() {
+        for (Entry entry : mEntries.values()) {
+            entry.recycle();
+        }
+        mEntries.clear();
+    }
+
+    public synchronized void clear() {
+        clearEntries();
+    }
+}
@@ -0,0 +1,285 @@
+package com.stardust.automator;
+
+/**
+ * Created by Stardust on 2017/6/3.
+ * <p>
+ * 选择器表达式的解析器。表达式由可选的类名和若干个方括号中的条件组成，例如：
+ * <pre>
+ * button[text^=发送][clickable]
+ * android.widget.EditText[id="com.example:id/input"][enabled=false]
+ * *[desc*=设置][bounds=0,0,1080,200]
+ * </pre>
+ * 类名不含"."时按android.widget下的类处理，首字母可以小写。条件的运算符有：= 相等，^= 开头，$= 结尾，*= 包含，~= 正则匹配。
+ * 字符串属性为id, text, desc, className, packageName；布尔属性(如clickable)省略值时为true；
+ * 另有drawingOrder=n, bounds/boundsInside/boundsContains=l,t,r,b。值含有"]"或首尾空格时可以用单引号或双引号括起来，引号中用"\"转义。
+ * <p>
+ * 每个条件都通过调用选择器对应的方法添加，因此与链式调用得到的选择器完全相同。
+ */
+
+public class SelectorExpression {
+
+    private final String mExpression;
+    private final UiGlobalSelector mSelector;
+    private int mPos = 0;
+
+    /**
+     * 解析expression，把其中的条件添加到selector中。
+     *
+     * @throws IllegalArgumentException 表达式有语法错误或未知的属性
+     */
+    public static void parse(String expression, UiGlobalSelector selector) {
+        new SelectorExpression(expression, selector).parse();
+    }
+
+    private SelectorExpression(String expression, UiGlobalSelector selector) {
+        mExpression = expression;
+        mSelector = selector;
+    }
+
+    private void parse() {
+        skipWhitespace();
+        if (peek('*')) {
+            mPos++;
+        } else if (mPos < mExpression.length() && mExpression.charAt(mPos) != '[') {
+            className(readName(true));
+        }
+        skipWhitespace();
+        while (mPos < mExpression.length()) {
+            expect('[');
+            skipWhitespace();
+            String name = readName(false);
+            skipWhitespace();
+            String op = readOperator();
+            String value = null;
+            if (op != null) {
+                skipWhitespace();
+                value = readValue();
+            }
+            skipWhitespace();
+            expect(']');
+            condition(name, op, value);
+            skipWhitespace();
+        }
+    }
+
+    private void className(String name) {
+        if (name.indexOf('.') < 0 && Character.isLowerCase(name.charAt(0))) {
+            name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+        mSelector.className(name);
+    }
+
+    private void condition(String name, String op, String value) {
+        switch (name) {
+            case "id":
+            case "text":
+            case "desc":
+            case "className":
+            case "packageName":
+                if (op == null) {
+                    throw error("missing value for " + name);
+                }
+                stringCondition(name, op, value);
+                return;
+            case "drawingOrder":
+                mSelector.drawingOrder(parseInt(requireEquals(name, op, value)));
+                return;
+            case "bounds":
+            case "boundsInside":
+            case "boundsContains":
+                boundsCondition(name, requireEquals(name, op, value));
+                return;
+        }
+        boolean b = op == null || parseBoolean(requireEquals(name, op, value));
+        if (!booleanCondition(name, b)) {
+            throw error("unknown attribute: " + name);
+        }
+    }
+
+    private void stringCondition(String name, String op, String value) {
+        String method = name;
+        switch (op) {
+            case "=":
+                break;
+            case "^=":
+                method += "StartsWith";
+                break;
+            case "$=":
+                method += "EndsWith";
+                break;
+            case "*=":
+                method += "Contains";
+                break;
+            case "~=":
+                method += "Matches";
+                break;
+        }
+        switch (method) {
+            case "id": mSelector.id(value); break;
+            case "idStartsWith": mSelector.idStartsWith(value); break;
+            case "idEndsWith": mSelector.idEndsWith(value); break;
+            case "idContains": mSelector.idContains(value); break;
+            case "idMatches": mSelector.idMatches(value); break;
+            case "text": mSelector.text(value); break;
+            case "textStartsWith": mSelector.textStartsWith(value); break;
+            case "textEndsWith": mSelector.textEndsWith(value); break;
+            case "textContains": mSelector.textContains(value); break;
+            case "textMatches": mSelector.textMatches(value); break;
+            case "desc": mSelector.desc(value); break;
+            case "descStartsWith": mSelector.descStartsWith(value); break;
+            case "descEndsWith": mSelector.descEndsWith(value); break;
+            case "descContains": mSelector.descContains(value); break;
+            case "descMatches": mSelector.descMatches(value); break;
+            case "className": mSelector.className(value); break;
+            case "classNameStartsWith": mSelector.classNameStartsWith(value); break;
+            case "classNameEndsWith": mSelector.classNameEndsWith(value); break;
+            case "classNameContains": mSelector.classNameContains(value); break;
+            case "classNameMatches": mSelector.classNameMatches(value); break;
+            case "packageName": mSelector.packageName(value); break;
+            case "packageNameStartsWith": mSelector.packageNameStartsWith(value); break;
+            case "packageNameEndsWith": mSelector.packageNameEndsWith(value); break;
+            case "packageNameContains": mSelector.packageNameContains(value); break;
+            case "packageNameMatches": mSelector.packageNameMatches(value); break;
+        }
+    }
+
+    private void boundsCondition(String name, String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw error("bounds should be l,t,r,b: " + value);
+        }
+        int l = parseInt(parts[0].trim()), t = parseInt(parts[1].trim()), r = parseInt(parts[2].trim()), b = parseInt(parts[3].trim());
+        switch (name) {
+            case "bounds": mSelector.bounds(l, t, r, b); break;
+            case "boundsInside": mSelector.boundsInside(l, t, r, b); break;
+            case "boundsContains": mSelector.boundsContains(l, t, r, b); break;
+        }
+    }
+
+    private boolean booleanCondition(String name, boolean b) {
+        switch (name) {
+            case "checkable": mSelector.checkable(b); break;
+            case "checked": mSelector.checked(b); break;
+            case "focusable": mSelector.focusable(b); break;
+            case "focused": mSelector.focused(b); break;
+            case "visibleToUser": mSelector.visibleToUser(b); break;
+            case "accessibilityFocused": mSelector.accessibilityFocused(b); break;
+            case "selected": mSelector.selected(b); break;
+            case "clickable": mSelector.clickable(b); break;
+            case "longClickable": mSelector.longClickable(b); break;
+            case "enabled": mSelector.enabled(b); break;
+            case "password": mSelector.password(b); break;
+            case "scrollable": mSelector.scrollable(b); break;
+            case "editable": mSelector.editable(b); break;
+            case "contentInvalid": mSelector.contentInvalid(b); break;
+            case "contextClickable": mSelector.contextClickable(b); break;
+            case "multiLine": mSelector.multiLine(b); break;
+            case "dismissable": mSelector.dismissable(b); break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    private String requireEquals(String name, String op, String value) {
+        if (op == null || !op.equals("=")) {
+            throw error(name + " only supports =");
+        }
+        return value;
+    }
+
+    private int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw error("not a number: " + value);
+        }
+    }
+
+    private boolean parseBoolean(String value) {
+        if (value.equals("true"))
+            return true;
+        if (value.equals("false"))
+            return false;
+        throw error("not a boolean: " + value);
+    }
+
+    private String readName(boolean allowDots) {
+        int start = mPos;
+        while (mPos < mExpression.length()) {
+            char c = mExpression.charAt(mPos);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$' && !(allowDots && c == '.'))
+                break;
+            mPos++;
+        }
+        if (start == mPos) {
+            throw error("name expected");
+        }
+        return mExpression.substring(start, mPos);
+    }
+
+    /**
+     * 没有运算符(即条件直接以"]"结束)时返回null
+     */
+    private String readOperator() {
+        if (peek('=')) {
+            mPos++;
+            return "=";
+        }
+        if (mPos + 1 < mExpression.length() && mExpression.charAt(mPos + 1) == '=' && "^$*~".indexOf(mExpression.charAt(mPos)) >= 0) {
+            mPos += 2;
+            return mExpression.substring(mPos - 2, mPos);
+        }
+        if (peek(']')) {
+            return null;
+        }
+        throw error("operator expected");
+    }
+
+    private String readValue() {
+        if (peek('"') || peek('\'')) {
+            char quote = mExpression.charAt(mPos++);
+            StringBuilder value = new StringBuilder();
+            while (mPos < mExpression.length()) {
+                char c = mExpression.charAt(mPos++);
+                if (c == quote) {
+                    return value.toString();
+                }
+                if (c == '\\' && mPos < mExpression.length()) {
+                    c = mExpression.charAt(mPos++);
+                }
+                value.append(c);
+            }
+            throw error("unterminated string");
+        }
+        int end = mExpression.indexOf(']', mPos);
+        if (end < 0) {
+            throw error("']' expected");
+        }
+        String value = mExpression.substring(mPos, end).trim();
+        mPos = end;
+        return value;
+    }
+
+    private boolean peek(char c) {
+        return mPos < mExpression.length() && mExpression.charAt(mPos) == c;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw error("'" + c + "' expected");
+        }
+        mPos++;
+    }
+
+    private void skipWhitespace() {
+        while (mPos < mExpression.length() && Character.isWhitespace(mExpression.charAt(mPos))) {
+            mPos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + mPos + " in selector expression: " + mExpression);
+    }
+
+}
@@ -4,17 +4,24 @@ import android.graphics.Rect;
 import android.os.Build;
 import android.support.annotation.Nullable;
 
+import com.stardust.automator.filter.AndFilter;
 import com.stardust.automator.filter.BooleanFilter;
 import com.stardust.automator.filter.BoundsFilter;
 import com.stardust.automator.filter.ClassNameFilter;
 import com.stardust.automator.filter.DescFilter;
 import com.stardust.automator.filter.DfsFilter;
+import com.stardust.automator.filter.FilterCursor;
+import com.stardust.automator.filter.FlagsFilter;
 import com.stardust.automator.filter.IdFilter;
 import com.stardust.automator.filter.ListFilter;
 import com.stardust.automator.filter.PackageNameFilter;
+import com.stardust.automator.filter.ParallelSnapshotFilter;
+import com.stardust.automator.filter.SearchOptions;
 import com.stardust.automator.filter.TextFilter;
+import com.stardust.util.LimitedHashMap;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -26,354 +33,660 @@ import java.util.Queue;
 public class UiGlobalSelector {
 
     private Queue<ListFilter> mFilters = new LinkedList<>();
+    private List<String> mConditions = new ArrayList<>();
+    private SearchOptions mSearchOptions = SearchOptions.DEFAULT;
+    private boolean mParallel;
+    private int[] mHitPoint;
+    private List<ListFilter> mPlan;
+
+    private static final LimitedHashMap<String, UiGlobalSelector> EXPRESSION_CACHE = new LimitedHashMap<>(64);
 
     //// 第一类筛选条件
 
     public UiGlobalSelector id(String id) {
-        mFilters.add(IdFilter.equals(id));
+        addFilter(IdFilter.equals(id), "id", id);
         return this;
     }
 
     public UiGlobalSelector idContains(String str) {
-        mFilters.add(IdFilter.contains(str));
+        addFilter(IdFilter.contains(str), "idContains", str);
         return this;
     }
 
     public UiGlobalSelector idStartsWith(String prefix) {
-        mFilters.add(IdFilter.startsWith(prefix));
+        addFilter(IdFilter.startsWith(prefix), "idStartsWith", prefix);
         return this;
     }
 
     public UiGlobalSelector idEndsWith(String suffix) {
-        mFilters.add(IdFilter.endsWith(suffix));
+        addFilter(IdFilter.endsWith(suffix), "idEndsWith", suffix);
         return this;
     }
 
     public UiGlobalSelector idMatches(String regex) {
-        mFilters.add(IdFilter.matches(regex));
+        addFilter(IdFilter.matches(regex), "idMatches", regex);
         return this;
     }
 
     public UiGlobalSelector text(String text) {
-        mFilters.add(TextFilter.equals(text));
+        addFilter(TextFilter.equals(text), "text", text);
         return this;
     }
 
     public UiGlobalSelector textContains(String str) {
-        mFilters.add(TextFilter.contains(str));
+        addFilter(TextFilter.contains(str), "textContains", str);
         return this;
     }
 
     public UiGlobalSelector textStartsWith(String prefix) {
-        mFilters.add(TextFilter.startsWith(prefix));
+        addFilter(TextFilter.startsWith(prefix), "textStartsWith", prefix);
         return this;
     }
 
     public UiGlobalSelector textEndsWith(String suffix) {
-        mFilters.add(TextFilter.endsWith(suffix));
+        addFilter(TextFilter.endsWith(suffix), "textEndsWith", suffix);
         return this;
     }
 
     public UiGlobalSelector textMatches(String regex) {
-        mFilters.add(TextFilter.matches(regex));
+        addFilter(TextFilter.matches(regex), "textMatches", regex);
         return this;
     }
 
     public UiGlobalSelector desc(String desc) {
-        mFilters.add(DescFilter.equals(desc));
+        addFilter(DescFilter.equals(desc), "desc", desc);
         return this;
     }
 
     public UiGlobalSelector descContains(String str) {
-        mFilters.add(DescFilter.contains(str));
+        addFilter(DescFilter.contains(str), "descContains", str);
         return this;
     }
 
     public UiGlobalSelector descStartsWith(String prefix) {
-        mFilters.add(DescFilter.startsWith(prefix));
+        addFilter(DescFilter.startsWith(prefix), "descStartsWith", prefix);
         return this;
     }
 
     public UiGlobalSelector descEndsWith(String suffix) {
-        mFilters.add(DescFilter.endsWith(suffix));
+        addFilter(DescFilter.endsWith(suffix), "descEndsWith", suffix);
         return this;
     }
 
     public UiGlobalSelector descMatches(String regex) {
-        mFilters.add(DescFilter.matches(regex));
+        addFilter(DescFilter.matches(regex), "descMatches", regex);
         return this;
     }
 
     public UiGlobalSelector className(String className) {
-        mFilters.add(ClassNameFilter.equals(className));
+        addFilter(ClassNameFilter.equals(className), "className", className);
         return this;
     }
 
     public UiGlobalSelector classNameContains(String str) {
-        mFilters.add(ClassNameFilter.contains(str));
+        addFilter(ClassNameFilter.contains(str), "classNameContains", str);
         return this;
     }
 
     public UiGlobalSelector classNameStartsWith(String prefix) {
-        mFilters.add(ClassNameFilter.startsWith(prefix));
+        addFilter(ClassNameFilter.startsWith(prefix), "classNameStartsWith", prefix);
         return this;
     }
 
     public UiGlobalSelector classNameEndsWith(String suffix) {
-        mFilters.add(ClassNameFilter.endsWith(suffix));
+        addFilter(ClassNameFilter.endsWith(suffix), "classNameEndsWith", suffix);
         return this;
     }
 
     public UiGlobalSelector classNameMatches(String regex) {
-        mFilters.add(ClassNameFilter.matches(regex));
+        addFilter(ClassNameFilter.matches(regex), "classNameMatches", regex);
         return this;
     }
 
     public UiGlobalSelector packageName(String packageName) {
-        mFilters.add(PackageNameFilter.equals(packageName));
+        addFilter(PackageNameFilter.equals(packageName), "packageName", packageName);
         return this;
     }
 
     public UiGlobalSelector packageNameContains(String str) {
-        mFilters.add(PackageNameFilter.contains(str));
+        addFilter(PackageNameFilter.contains(str), "packageNameContains", str);
         return this;
     }
 
     public UiGlobalSelector packageNameStartsWith(String prefix) {
-        mFilters.add(PackageNameFilter.startsWith(prefix));
+        addFilter(PackageNameFilter.startsWith(prefix), "packageNameStartsWith", prefix);
         return this;
     }
 
     public UiGlobalSelector packageNameEndsWith(String suffix) {
-        mFilters.add(PackageNameFilter.endsWith(suffix));
+        addFilter(PackageNameFilter.endsWith(suffix), "packageNameEndsWith", suffix);
         return this;
     }
 
     public UiGlobalSelector packageNameMatches(String regex) {
-        mFilters.add(PackageNameFilter.matches(regex));
+        addFilter(PackageNameFilter.matches(regex), "packageNameMatches", regex);
         return this;
     }
 
     public UiGlobalSelector bounds(int l, int t, int r, int b) {
-        mFilters.add(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_EQUALS));
+        addFilter(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_EQUALS), "bounds", l, t, r, b);
         return this;
     }
 
     public UiGlobalSelector boundsInside(int l, int t, int r, int b) {
-        mFilters.add(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_INSIDE));
+        addFilter(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_INSIDE), "boundsInside", l, t, r, b);
         return this;
     }
 
     public UiGlobalSelector boundsContains(int l, int t, int r, int b) {
-        mFilters.add(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_CONTAINS));
+        addFilter(new BoundsFilter(new Rect(l, t, r, b), BoundsFilter.TYPE_CONTAINS), "boundsContains", l, t, r, b);
+        return this;
+    }
+
+    /**
+     * 点击测试：在符合其他条件、且包含坐标(x, y)的控件中只选出最上层(文档顺序最后、通常也是最内层)的一个，
+     * 即点击该位置时最可能接收点击的控件。在快照上使用快照的空间索引。
+     */
+    public UiGlobalSelector at(int x, int y) {
+        mHitPoint = new int[]{x, y};
+        addFilter(new BoundsFilter(new Rect(x, y, x + 1, y + 1), BoundsFilter.TYPE_CONTAINS), "at", x, y);
         return this;
     }
 
     public UiGlobalSelector drawingOrder(final int order) {
-        mFilters.add(new DfsFilter() {
+        addFilter(new DfsFilter() {
             @Override
             protected boolean isIncluded(UiObject nodeInfo) {
                 return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && nodeInfo.getDrawingOrder() == order;
             }
-        });
+        }, "drawingOrder", order);
         return this;
     }
 
     //// 第二类筛选条件 -able
 
     public UiGlobalSelector checkable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CHECKABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.CHECKABLE, b), "checkable", b);
         return this;
     }
 
     public UiGlobalSelector checked(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CHECKED, b));
+        addFilter(BooleanFilter.get(BooleanFilter.CHECKED, b), "checked", b);
         return this;
     }
 
     public UiGlobalSelector focusable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.FOCUSABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.FOCUSABLE, b), "focusable", b);
         return this;
     }
 
     public UiGlobalSelector focused(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.FOCUSED, b));
+        addFilter(BooleanFilter.get(BooleanFilter.FOCUSED, b), "focused", b);
         return this;
     }
 
     public UiGlobalSelector visibleToUser(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.VISIBLE_TO_USER, b));
+        addFilter(BooleanFilter.get(BooleanFilter.VISIBLE_TO_USER, b), "visibleToUser", b);
         return this;
     }
 
     public UiGlobalSelector accessibilityFocused(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.ACCESSIBILITY_FOCUSED, b));
+        addFilter(BooleanFilter.get(BooleanFilter.ACCESSIBILITY_FOCUSED, b), "accessibilityFocused", b);
         return this;
     }
 
     public UiGlobalSelector selected(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.SELECTED, b));
+        addFilter(BooleanFilter.get(BooleanFilter.SELECTED, b), "selected", b);
         return this;
     }
 
     public UiGlobalSelector clickable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CLICKABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.CLICKABLE, b), "clickable", b);
         return this;
     }
 
     public UiGlobalSelector longClickable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.LONG_CLICKABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.LONG_CLICKABLE, b), "longClickable", b);
         return this;
     }
 
     public UiGlobalSelector enabled(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.ENABLED, b));
+        addFilter(BooleanFilter.get(BooleanFilter.ENABLED, b), "enabled", b);
         return this;
     }
 
     public UiGlobalSelector password(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.PASSWORD, b));
+        addFilter(BooleanFilter.get(BooleanFilter.PASSWORD, b), "password", b);
         return this;
     }
 
     public UiGlobalSelector scrollable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.SCROLLABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.SCROLLABLE, b), "scrollable", b);
         return this;
     }
 
     public UiGlobalSelector editable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.EDITABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.EDITABLE, b), "editable", b);
         return this;
     }
 
     public UiGlobalSelector contentInvalid(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CONTENT_INVALID, b));
+        addFilter(BooleanFilter.get(BooleanFilter.CONTENT_INVALID, b), "contentInvalid", b);
         return this;
     }
 
     public UiGlobalSelector contextClickable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CONTEXT_CLICKABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.CONTEXT_CLICKABLE, b), "contextClickable", b);
         return this;
     }
 
     public UiGlobalSelector multiLine(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.MULTI_LINE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.MULTI_LINE, b), "multiLine", b);
         return this;
     }
 
     public UiGlobalSelector dismissable(boolean b) {
-        mFilters.add(BooleanFilter.get(BooleanFilter.DISMISSABLE, b));
+        addFilter(BooleanFilter.get(BooleanFilter.DISMISSABLE, b), "dismissable", b);
         return this;
     }
 
     public UiGlobalSelector checkable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CHECKABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.CHECKABLE, true), "checkable", true);
         return this;
     }
 
     public UiGlobalSelector checked() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CHECKED, true));
+        addFilter(BooleanFilter.get(BooleanFilter.CHECKED, true), "checked", true);
         return this;
     }
 
     public UiGlobalSelector focusable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.FOCUSABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.FOCUSABLE, true), "focusable", true);
         return this;
     }
 
     public UiGlobalSelector focused() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.FOCUSED, true));
+        addFilter(BooleanFilter.get(BooleanFilter.FOCUSED, true), "focused", true);
         return this;
     }
 
     public UiGlobalSelector visibleToUser() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.VISIBLE_TO_USER, true));
+        addFilter(BooleanFilter.get(BooleanFilter.VISIBLE_TO_USER, true), "visibleToUser", true);
         return this;
     }
 
     public UiGlobalSelector accessibilityFocused() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.ACCESSIBILITY_FOCUSED, true));
+        addFilter(BooleanFilter.get(BooleanFilter.ACCESSIBILITY_FOCUSED, true), "accessibilityFocused", true);
         return this;
     }
 
     public UiGlobalSelector selected() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.SELECTED, true));
+        addFilter(BooleanFilter.get(BooleanFilter.SELECTED, true), "selected", true);
         return this;
     }
 
     public UiGlobalSelector clickable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CLICKABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.CLICKABLE, true), "clickable", true);
         return this;
     }
 
     public UiGlobalSelector longClickable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.LONG_CLICKABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.LONG_CLICKABLE, true), "longClickable", true);
         return this;
     }
 
     public UiGlobalSelector enabled() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.ENABLED, true));
+        addFilter(BooleanFilter.get(BooleanFilter.ENABLED, true), "enabled", true);
         return this;
     }
 
     public UiGlobalSelector password() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.PASSWORD, true));
+        addFilter(BooleanFilter.get(BooleanFilter.PASSWORD, true), "password", true);
         return this;
     }
 
     public UiGlobalSelector scrollable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.SCROLLABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.SCROLLABLE, true), "scrollable", true);
         return this;
     }
 
     public UiGlobalSelector editable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.EDITABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.EDITABLE, true), "editable", true);
         return this;
     }
 
     public UiGlobalSelector contentInvalid() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CONTENT_INVALID, true));
+        addFilter(BooleanFilter.get(BooleanFilter.CONTENT_INVALID, true), "contentInvalid", true);
         return this;
     }
 
     public UiGlobalSelector contextClickable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.CONTEXT_CLICKABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.CONTEXT_CLICKABLE, true), "contextClickable", true);
         return this;
     }
 
     public UiGlobalSelector multiLine() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.MULTI_LINE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.MULTI_LINE, true), "multiLine", true);
         return this;
     }
 
     public UiGlobalSelector dismissable() {
-        mFilters.add(BooleanFilter.get(BooleanFilter.DISMISSABLE, true));
+        addFilter(BooleanFilter.get(BooleanFilter.DISMISSABLE, true), "dismissable", true);
+        return this;
+    }
+
+    //// 遍历方式
+
+    /**
+     * 只查找深度不超过n的控件，查找的起点深度为0。更深的子树不会被遍历。
+     */
+    public UiGlobalSelector maxDepth(int n) {
+        mSearchOptions = mSearchOptions.withMaxDepth(n);
+        addCondition("maxDepth", n);
+        return this;
+    }
+
+    /**
+     * 只查找深度为n的控件，例如depth(1)为查找起点的直接子控件。
+     */
+    public UiGlobalSelector depth(int n) {
+        mSearchOptions = mSearchOptions.withDepth(n);
+        addCondition("depth", n);
         return this;
     }
 
+    /**
+     * 按层次(广度优先)遍历，适合查找离根节点较近的控件。结果按层次顺序排列。
+     */
+    public UiGlobalSelector breadthFirst() {
+        mSearchOptions = mSearchOptions.withBreadthFirst(true);
+        addCondition("breadthFirst");
+        return this;
+    }
+
+    public SearchOptions getSearchOptions() {
+        return mSearchOptions;
+    }
+
+    /**
+     * 在快照上查找时把节点分给多个线程并行判断，适合控件很多的界面。不改变查找结果，只对快照有效，
+     * 并且需要Android 5.0以上；广度优先查找时不生效。
+     */
+    public UiGlobalSelector parallel() {
+        mParallel = true;
+        return this;
+    }
+
+    public boolean isParallel() {
+        return mParallel;
+    }
+
     public UiObjectCollection findOf(UiObject node) {
+        return findOf(node, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 查找最多limit个符合条件的控件。最后一个筛选阶段找到足够的控件后会立即停止遍历。
+     */
+    public UiObjectCollection findOf(UiObject node, int limit) {
         List<UiObject> list = new ArrayList<>();
         list.add(node);
-        for (ListFilter filter : mFilters) {
-            list = filter.filter(list);
+        List<ListFilter> filters = getPlan();
+        for (int i = 0; i < filters.size(); i++) {
+            ListFilter filter = filters.get(i);
+            if (filter instanceof DfsFilter) {
+                // 点击测试要找最后一个包含该点的控件，不能提前停止
+                int stageLimit = i == filters.size() - 1 && mHitPoint == null ? limit : Integer.MAX_VALUE;
+                list = ((DfsFilter) filter).filter(list, stageLimit, mSearchOptions);
+            } else {
+                list = filter.filter(list);
+            }
+        }
+        if (mHitPoint != null) {
+            list = keepTopmost(list, node);
+        }
+        if (list.size() > limit) {
+            list = new ArrayList<>(list.subList(0, limit));
         }
         return UiObjectCollection.of(list);
     }
 
+    /**
+     * 只保留文档顺序最后的控件，回收其他控件(查找起点除外)
+     */
+    private static List<UiObject> keepTopmost(List<UiObject> list, UiObject root) {
+        if (list.size() <= 1) {
+            return list;
+        }
+        for (int i = 0; i < list.size() - 1; i++) {
+            if (list.get(i) != root) {
+                list.get(i).recycle();
+            }
+        }
+        return Collections.singletonList(list.get(list.size() - 1));
+    }
+
+    /**
+     * 返回边遍历边产生结果的集合，见{@link LazyUiObjectCollection}。选择器有多个筛选阶段或按广度优先查找时，
+     * 前面的阶段需要完整的结果，此时会先找出所有控件。
+     */
+    public LazyUiObjectCollection findLazily(UiObject node) {
+        List<ListFilter> filters = getPlan();
+        if (mHitPoint == null && !mSearchOptions.isBreadthFirst() && filters.size() == 1 && filters.get(0) instanceof DfsFilter) {
+            return LazyUiObjectCollection.of(new FilterCursor(node, (DfsFilter) filters.get(0), mSearchOptions));
+        }
+        return LazyUiObjectCollection.of(findOf(node), node);
+    }
+
+    /**
+     * 在快照上查找，不产生跨进程调用。返回的控件仍可以执行操作，但不能在快照回收之后执行。
+     */
+    public UiObjectCollection findOf(UiSnapshot snapshot, int limit) {
+        if (snapshot.size() == 0) {
+            return UiObjectCollection.EMPTY;
+        }
+        if (mHitPoint != null && mFilters.size() == 1 && mSearchOptions.isDefault()) {
+            // 只有at(x, y)一个条件时直接用空间索引做点击测试
+            int hit = snapshot.hitTest(mHitPoint[0], mHitPoint[1]);
+            return hit < 0 || limit <= 0 ? UiObjectCollection.EMPTY : UiObjectCollection.of(Collections.singletonList(snapshot.getObject(hit)));
+        }
+        if (mParallel && !mSearchOptions.isBreadthFirst() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            List<ListFilter> filters = getPlan();
+            // 有按id、文本或边界的查找时只需判断少数候选节点，串行更快
+            if (filters.size() == 1 && filters.get(0) instanceof DfsFilter && ((DfsFilter) filters.get(0)).getNativeQuery() == null) {
+                // 点击测试要找最后一个包含该点的控件，不能限制数量
+                int parallelLimit = mHitPoint == null ? limit : Integer.MAX_VALUE;
+                List<UiObject> list = ParallelSnapshotFilter.filter((DfsFilter) filters.get(0), snapshot, 0, mSearchOptions, parallelLimit);
+                if (mHitPoint != null) {
+                    list = keepTopmost(list, snapshot.getRootObject());
+                }
+                if (list.size() > limit) {
+                    list = new ArrayList<>(list.subList(0, limit));
+                }
+                return UiObjectCollection.of(list);
+            }
+        }
+        return findOf(snapshot.getRootObject(), limit);
+    }
+
+    public UiObjectCollection findOf(UiSnapshot snapshot) {
+        return findOf(snapshot, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 选择器只有一个筛选阶段且没有遍历限制时返回该阶段的筛选条件，可以与其他选择器在同一次遍历中判断；否则返回null。
+     */
+    @Nullable
+    DfsFilter compileSingleFilter() {
+        if (!mSearchOptions.isDefault() || mHitPoint != null) {
+            return null;
+        }
+        List<ListFilter> filters = getPlan();
+        if (filters.size() == 1 && filters.get(0) instanceof DfsFilter) {
+            return (DfsFilter) filters.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * 返回优化后的筛选阶段，添加条件之前一直复用。
+     */
+    private List<ListFilter> getPlan() {
+        List<ListFilter> plan = mPlan;
+        if (plan == null) {
+            plan = compile();
+            mPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * 把连续的DfsFilter合并为一个AndFilter，使它们在同一次遍历中完成筛选。其中的布尔属性条件合并为一个FlagsFilter。
+     */
+    private List<ListFilter> compile() {
+        List<ListFilter> compiled = new ArrayList<>();
+        List<DfsFilter> dfsFilters = new ArrayList<>();
+        for (ListFilter filter : mFilters) {
+            if (filter instanceof DfsFilter) {
+                dfsFilters.add((DfsFilter) filter);
+            } else {
+                fuse(dfsFilters, compiled);
+                compiled.add(filter);
+            }
+        }
+        fuse(dfsFilters, compiled);
+        return compiled;
+    }
+
+    private static void fuse(List<DfsFilter> dfsFilters, List<ListFilter> compiled) {
+        if (dfsFilters.isEmpty()) {
+            return;
+        }
+        // 布尔属性条件先合并为一次位运算
+        List<DfsFilter> folded = FlagsFilter.fold(dfsFilters);
+        if (folded.size() == 1) {
+            compiled.add(folded.get(0));
+        } else {
+            compiled.add(new AndFilter(folded));
+        }
+        dfsFilters.clear();
+    }
+
     @Nullable
     public UiObject findOneOf(UiObject node) {
-        // TODO: 2017/3/9 优化
-        UiObjectCollection collection = findOf(node);
+        UiObjectCollection collection = findOf(node, 1);
         if (collection.size() == 0) {
             return null;
         }
         return collection.get(0);
     }
 
+    /**
+     * 添加自定义的筛选条件。由于无法描述自定义条件，添加后该选择器不再有签名。
+     */
     public UiGlobalSelector addFilter(ListFilter filter) {
         mFilters.add(filter);
+        mConditions = null;
+        mPlan = null;
         return this;
     }
 
+    /**
+     * 添加筛选条件，并以"name(args)"的形式记录在选择器的签名中。
+     */
+    protected UiGlobalSelector addFilter(ListFilter filter, String name, Object... args) {
+        if (filter instanceof DfsFilter) {
+            // 布尔条件取true和false时的通过率不同，分开统计
+            boolean negated = args.length == 1 && Boolean.FALSE.equals(args[0]);
+            ((DfsFilter) filter).setStatsKey(negated ? name + "(false)" : name);
+        }
+        mFilters.add(filter);
+        mPlan = null;
+        addCondition(name, args);
+        return this;
+    }
+
+    /**
+     * 用选择器表达式添加筛选条件，例如"button[text^=发送][clickable]"，语法见{@link SelectorExpression}。
+     * 表达式解析并优化后按表达式缓存，在循环中重复使用相同的表达式不会重新创建筛选条件。
+     */
+    public UiGlobalSelector query(String expression) {
+        String key = getClass().getName() + '/' + expression;
+        UiGlobalSelector template;
+        synchronized (EXPRESSION_CACHE) {
+            template = EXPRESSION_CACHE.get(key);
+        }
+        if (template == null) {
+            template = newTemplate();
+            SelectorExpression.parse(expression, template);
+            template.getPlan();
+            synchronized (EXPRESSION_CACHE) {
+                EXPRESSION_CACHE.put(key, template);
+            }
+        }
+        boolean empty = mFilters.isEmpty();
+        mFilters.addAll(template.mFilters);
+        if (mConditions != null) {
+            if (template.mConditions == null) {
+                mConditions = null;
+            } else {
+                mConditions.addAll(template.mConditions);
+            }
+        }
+        // 选择器原本没有条件时直接使用缓存的优化结果
+        mPlan = empty ? template.mPlan : null;
+        return this;
+    }
+
+    /**
+     * 创建用于解析表达式的空白选择器。表达式的条件由它的方法创建，子类可以借此改变条件的创建方式。
+     */
+    protected UiGlobalSelector newTemplate() {
+        return new UiGlobalSelector();
+    }
+
+    protected void addCondition(String name, Object... args) {
+        if (mConditions != null) {
+            mConditions.add(describe(name, args));
+        }
+    }
+
+    /**
+     * 返回选择器的规范签名，条件相同(与顺序无关)的选择器签名相同。含有自定义条件时返回null。
+     */
+    @Nullable
+    public String getSignature() {
+        if (mConditions == null) {
+            return null;
+        }
+        List<String> conditions = new ArrayList<>(mConditions);
+        Collections.sort(conditions);
+        StringBuilder signature = new StringBuilder();
+        for (String condition : conditions) {
+            if (signature.length() > 0) {
+                signature.append('.');
+            }
+            signature.append(condition);
+        }
+        return signature.toString();
+    }
+
+    private static String describe(String name, Object[] args) {
+        StringBuilder sb = new StringBuilder(name).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Object arg = args[i];
+            if (arg instanceof String) {
+                String str = (String) arg;
+                sb.append('"').append(str.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                sb.append(arg);
+            }
+        }
+        return sb.append(')').toString();
+    }
+
 
 }
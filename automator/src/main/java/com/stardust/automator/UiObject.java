@@ -72,10 +72,10 @@ public class UiObject extends AccessibilityNodeInfoCompat {
     @Nullable
     public UiObject parent() {
         try {
-            AccessibilityNodeInfoCompat parent = super.getParent();
+            AccessibilityNodeInfoCompat parent = getParent();
             if (parent == null)
                 return null;
-            return new UiObject(parent.getInfo());
+            return new UiObject(parent.getInfo(), mAllocator);
         } catch (IllegalStateException e) {
             // FIXME: 2017/5/5
             return null;
@@ -85,10 +85,10 @@ public class UiObject extends AccessibilityNodeInfoCompat {
     @Nullable
     public UiObject child(int i) {
         try {
-            AccessibilityNodeInfoCompat child = super.getChild(i);
+            AccessibilityNodeInfoCompat child = getChild(i);
             if (child == null)
                 return null;
-            return new UiObject(child.getInfo());
+            return new UiObject(child.getInfo(), mAllocator);
         } catch (IllegalStateException e) {
             // FIXME: 2017/5/5
             return null;
@@ -310,6 +310,13 @@ public class UiObject extends AccessibilityNodeInfoCompat {
     }
 
 
+    /**
+     * 读取mask包含的各个属性(UiSnapshot.FLAG_*)，按位返回，用于一次判断多个布尔属性。
+     */
+    public int getFlags(int mask) {
+        return UiSnapshot.readFlags(this, mask);
+    }
+
     public boolean checkable() {
         return isCheckable();
     }
@@ -379,6 +386,14 @@ public class UiObject extends AccessibilityNodeInfoCompat {
         return compatListToUiObjectList(findAccessibilityNodeInfosByText(text), mAllocator);
     }
 
+    /**
+     * findByText的结果是否一定包含子树中所有符合条件的节点。真实节点的按文本查找由目标应用完成，
+     * AccessibilityNodeProvider提供的虚拟节点、通过AccessibilityDelegate提供文本的自定义控件都可能查找不到，因此返回false。
+     */
+    public boolean isTextLookupComplete() {
+        return false;
+    }
+
     @Override
     public List<AccessibilityNodeInfoCompat> findAccessibilityNodeInfosByViewId(String viewId) {
         if (mAllocator == null)
@@ -390,6 +405,15 @@ public class UiObject extends AccessibilityNodeInfoCompat {
         return compatListToUiObjectList(findAccessibilityNodeInfosByViewId(viewId), mAllocator);
     }
 
+    /**
+     * 查找边界满足条件的节点，type为BoundsIndex.TYPE_*。真实节点没有对应的查找接口，返回null，由调用者自行遍历；
+     * 快照中的节点使用快照的空间索引。
+     */
+    @Nullable
+    public List<UiObject> findByBounds(Rect bounds, int type) {
+        return null;
+    }
+
     public static List<UiObject> compatListToUiObjectList(List<AccessibilityNodeInfoCompat> compats, AccessibilityNodeInfoAllocator allocator) {
         List<UiObject> uiObjects = new ArrayList<>(compats.size());
         for (AccessibilityNodeInfoCompat compat : compats) {
@@ -403,10 +427,17 @@ public class UiObject extends AccessibilityNodeInfoCompat {
         return compatListToUiObjectList(compats, null);
     }
 
+    /**
+     * 有分配器时通过分配器回收，使分配器不再跟踪该节点。
+     */
     @Override
     public void recycle() {
         try {
-            super.recycle();
+            if (mAllocator == null) {
+                super.recycle();
+            } else {
+                mAllocator.recycle(this);
+            }
         } catch (Exception e) {
             Log.w(TAG, mStackTrace, e);
         }
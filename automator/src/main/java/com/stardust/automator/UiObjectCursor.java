@@ -0,0 +1,29 @@
+package com.stardust.automator;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Created by Stardust on 2017/6/5.
+ * <p>
+ * 按需逐个产生查找结果的游标。
+ */
+
+public interface UiObjectCursor {
+
+    /**
+     * 返回下一个结果，没有更多结果时返回null。返回的节点由调用者负责。
+     */
+    @Nullable
+    UiObject next();
+
+    /**
+     * 把next()返回的、调用者不再需要的节点交还给游标。节点的子树可能还在遍历中，由游标决定何时回收；
+     * 查找的起点不会被回收。
+     */
+    void release(UiObject node);
+
+    /**
+     * 结束查找，回收游标持有的、尚未返回的节点。可以重复调用。
+     */
+    void close();
+}
@@ -0,0 +1,692 @@
+package com.stardust.automator;
+
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Stardust on 2017/5/23.
+ * <p>
+ * 窗口控件树的不可变快照。节点按先序(文档顺序)编号，属性保存在平坦的数组中，
+ * 捕获之后的查询不再需要跨进程调用。
+ */
+
+public class UiSnapshot {
+
+    public static final int FLAG_CHECKABLE = 1;
+    public static final int FLAG_CHECKED = 1 << 1;
+    public static final int FLAG_FOCUSABLE = 1 << 2;
+    public static final int FLAG_FOCUSED = 1 << 3;
+    public static final int FLAG_VISIBLE_TO_USER = 1 << 4;
+    public static final int FLAG_ACCESSIBILITY_FOCUSED = 1 << 5;
+    public static final int FLAG_SELECTED = 1 << 6;
+    public static final int FLAG_CLICKABLE = 1 << 7;
+    public static final int FLAG_LONG_CLICKABLE = 1 << 8;
+    public static final int FLAG_ENABLED = 1 << 9;
+    public static final int FLAG_PASSWORD = 1 << 10;
+    public static final int FLAG_SCROLLABLE = 1 << 11;
+    public static final int FLAG_EDITABLE = 1 << 12;
+    public static final int FLAG_CONTENT_INVALID = 1 << 13;
+    public static final int FLAG_CONTEXT_CLICKABLE = 1 << 14;
+    public static final int FLAG_MULTI_LINE = 1 << 15;
+    public static final int FLAG_DISMISSABLE = 1 << 16;
+    public static final int FLAG_ALL = (1 << 17) - 1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    public static UiSnapshot capture(UiObject root) {
+        return new UiSnapshot(root);
+    }
+
+    private int mSize;
+    private int[] mParent;
+    private int[] mDepth;
+    private int[] mSubtreeSize;
+    private int[] mChildrenOffset;
+    private int[] mChildren;
+    private int[] mFlags;
+    private int[] mDrawingOrder;
+    private int[] mBounds;
+    private String[] mText;
+    private String[] mDesc;
+    private String[] mClassName;
+    private String[] mPackageName;
+    private String[] mId;
+    private UiObject[] mNodes;
+    private NodeView[] mViews;
+    private BoundsIndex mBoundsIndex;
+
+    private UiSnapshot() {
+
+    }
+
+    private UiSnapshot(UiObject root) {
+        allocate(INITIAL_CAPACITY);
+        Map<String, String> pool = new HashMap<>();
+        // 显式栈的先序遍历，栈中保存节点及其父节点编号
+        UiObject[] nodeStack = new UiObject[INITIAL_CAPACITY];
+        int[] parentStack = new int[INITIAL_CAPACITY];
+        int top = 0;
+        nodeStack[0] = root;
+        parentStack[0] = -1;
+        while (top >= 0) {
+            UiObject node = nodeStack[top];
+            int parent = parentStack[top];
+            nodeStack[top--] = null;
+            int index = add(node, parent, pool);
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                UiObject child = node.child(i);
+                if (child == null)
+                    continue;
+                top++;
+                if (top == nodeStack.length) {
+                    nodeStack = Arrays.copyOf(nodeStack, top * 2);
+                    parentStack = Arrays.copyOf(parentStack, top * 2);
+                }
+                nodeStack[top] = child;
+                parentStack[top] = index;
+            }
+        }
+        trim();
+        buildChildren();
+        mViews = new NodeView[mSize];
+    }
+
+    private void allocate(int capacity) {
+        mParent = new int[capacity];
+        mDepth = new int[capacity];
+        mFlags = new int[capacity];
+        mDrawingOrder = new int[capacity];
+        mBounds = new int[capacity * 4];
+        mText = new String[capacity];
+        mDesc = new String[capacity];
+        mClassName = new String[capacity];
+        mPackageName = new String[capacity];
+        mId = new String[capacity];
+        mNodes = new UiObject[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mParent.length)
+            return;
+        int newCapacity = Math.max(capacity, mParent.length * 2);
+        mParent = Arrays.copyOf(mParent, newCapacity);
+        mDepth = Arrays.copyOf(mDepth, newCapacity);
+        mFlags = Arrays.copyOf(mFlags, newCapacity);
+        mDrawingOrder = Arrays.copyOf(mDrawingOrder, newCapacity);
+        mBounds = Arrays.copyOf(mBounds, newCapacity * 4);
+        mText = Arrays.copyOf(mText, newCapacity);
+        mDesc = Arrays.copyOf(mDesc, newCapacity);
+        mClassName = Arrays.copyOf(mClassName, newCapacity);
+        mPackageName = Arrays.copyOf(mPackageName, newCapacity);
+        mId = Arrays.copyOf(mId, newCapacity);
+        mNodes = Arrays.copyOf(mNodes, newCapacity);
+    }
+
+    private void trim() {
+        mParent = Arrays.copyOf(mParent, mSize);
+        mDepth = Arrays.copyOf(mDepth, mSize);
+        mFlags = Arrays.copyOf(mFlags, mSize);
+        mDrawingOrder = Arrays.copyOf(mDrawingOrder, mSize);
+        mBounds = Arrays.copyOf(mBounds, mSize * 4);
+        mText = Arrays.copyOf(mText, mSize);
+        mDesc = Arrays.copyOf(mDesc, mSize);
+        mClassName = Arrays.copyOf(mClassName, mSize);
+        mPackageName = Arrays.copyOf(mPackageName, mSize);
+        mId = Arrays.copyOf(mId, mSize);
+        mNodes = Arrays.copyOf(mNodes, mSize);
+    }
+
+    private int add(UiObject node, int parent, Map<String, String> pool) {
+        int index = mSize;
+        ensureCapacity(index + 1);
+        mSize++;
+        mParent[index] = parent;
+        mDepth[index] = parent < 0 ? 0 : mDepth[parent] + 1;
+        set(index, node, pool);
+        return index;
+    }
+
+    private void set(int index, UiObject node, Map<String, String> pool) {
+        mFlags[index] = node.getFlags(FLAG_ALL);
+        mDrawingOrder[index] = node.getDrawingOrder();
+        Rect rect = new Rect();
+        node.getBoundsInScreen(rect);
+        mBounds[index * 4] = rect.left;
+        mBounds[index * 4 + 1] = rect.top;
+        mBounds[index * 4 + 2] = rect.right;
+        mBounds[index * 4 + 3] = rect.bottom;
+        mText[index] = intern(pool, node.getText());
+        mDesc[index] = intern(pool, node.getContentDescription());
+        mClassName[index] = intern(pool, node.getClassName());
+        mPackageName[index] = intern(pool, node.getPackageName());
+        mId[index] = intern(pool, node.getViewIdResourceName());
+        mNodes[index] = node;
+    }
+
+    private static String intern(Map<String, String> pool, CharSequence charSequence) {
+        if (charSequence == null)
+            return null;
+        String str = charSequence.toString();
+        String interned = pool.get(str);
+        if (interned == null) {
+            pool.put(str, str);
+            return str;
+        }
+        return interned;
+    }
+
+    /**
+     * 读取node中mask包含的属性，按FLAG_*的位返回。
+     */
+    static int readFlags(UiObject node, int mask) {
+        int flags = 0;
+        if ((mask & FLAG_CHECKABLE) != 0 && node.isCheckable()) flags |= FLAG_CHECKABLE;
+        if ((mask & FLAG_CHECKED) != 0 && node.isChecked()) flags |= FLAG_CHECKED;
+        if ((mask & FLAG_FOCUSABLE) != 0 && node.isFocusable()) flags |= FLAG_FOCUSABLE;
+        if ((mask & FLAG_FOCUSED) != 0 && node.isFocused()) flags |= FLAG_FOCUSED;
+        if ((mask & FLAG_VISIBLE_TO_USER) != 0 && node.isVisibleToUser()) flags |= FLAG_VISIBLE_TO_USER;
+        if ((mask & FLAG_ACCESSIBILITY_FOCUSED) != 0 && node.isAccessibilityFocused()) flags |= FLAG_ACCESSIBILITY_FOCUSED;
+        if ((mask & FLAG_SELECTED) != 0 && node.isSelected()) flags |= FLAG_SELECTED;
+        if ((mask & FLAG_CLICKABLE) != 0 && node.isClickable()) flags |= FLAG_CLICKABLE;
+        if ((mask & FLAG_LONG_CLICKABLE) != 0 && node.isLongClickable()) flags |= FLAG_LONG_CLICKABLE;
+        if ((mask & FLAG_ENABLED) != 0 && node.isEnabled()) flags |= FLAG_ENABLED;
+        if ((mask & FLAG_PASSWORD) != 0 && node.isPassword()) flags |= FLAG_PASSWORD;
+        if ((mask & FLAG_SCROLLABLE) != 0 && node.isScrollable()) flags |= FLAG_SCROLLABLE;
+        if ((mask & FLAG_EDITABLE) != 0 && node.isEditable()) flags |= FLAG_EDITABLE;
+        if ((mask & FLAG_CONTENT_INVALID) != 0 && node.isContentInvalid()) flags |= FLAG_CONTENT_INVALID;
+        if ((mask & FLAG_CONTEXT_CLICKABLE) != 0 && node.isContextClickable()) flags |= FLAG_CONTEXT_CLICKABLE;
+        if ((mask & FLAG_MULTI_LINE) != 0 && node.isMultiLine()) flags |= FLAG_MULTI_LINE;
+        if ((mask & FLAG_DISMISSABLE) != 0 && node.isDismissable()) flags |= FLAG_DISMISSABLE;
+        return flags;
+    }
+
+    /**
+     * 先序编号下，每个节点的子节点编号递增，按编号顺序填充即可保持子节点原有顺序。
+     */
+    private void buildChildren() {
+        mSubtreeSize = new int[mSize];
+        int[] childCount = new int[mSize];
+        for (int i = mSize - 1; i >= 0; i--) {
+            mSubtreeSize[i] += 1;
+            int parent = mParent[i];
+            if (parent >= 0) {
+                mSubtreeSize[parent] += mSubtreeSize[i];
+                childCount[parent]++;
+            }
+        }
+        mChildrenOffset = new int[mSize + 1];
+        for (int i = 0; i < mSize; i++) {
+            mChildrenOffset[i + 1] = mChildrenOffset[i] + childCount[i];
+        }
+        mChildren = new int[Math.max(0, mSize - 1)];
+        int[] filled = new int[mSize];
+        for (int i = 1; i < mSize; i++) {
+            int parent = mParent[i];
+            mChildren[mChildrenOffset[parent] + filled[parent]] = i;
+            filled[parent]++;
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int parent(int i) {
+        return mParent[i];
+    }
+
+    public int depth(int i) {
+        return mDepth[i];
+    }
+
+    public int childCount(int i) {
+        return mChildrenOffset[i + 1] - mChildrenOffset[i];
+    }
+
+    public int child(int i, int index) {
+        return mChildren[mChildrenOffset[i] + index];
+    }
+
+    /**
+     * 以i为根的子树占据编号[i, i + subtreeSize(i))。
+     */
+    public int subtreeSize(int i) {
+        return mSubtreeSize[i];
+    }
+
+    public int flags(int i) {
+        return mFlags[i];
+    }
+
+    public boolean hasFlags(int i, int mask) {
+        return (mFlags[i] & mask) == mask;
+    }
+
+    public int drawingOrder(int i) {
+        return mDrawingOrder[i];
+    }
+
+    public void getBoundsInScreen(int i, Rect outBounds) {
+        outBounds.set(mBounds[i * 4], mBounds[i * 4 + 1], mBounds[i * 4 + 2], mBounds[i * 4 + 3]);
+    }
+
+    public int left(int i) {
+        return mBounds[i * 4];
+    }
+
+    public int top(int i) {
+        return mBounds[i * 4 + 1];
+    }
+
+    public int right(int i) {
+        return mBounds[i * 4 + 2];
+    }
+
+    public int bottom(int i) {
+        return mBounds[i * 4 + 3];
+    }
+
+    @Nullable
+    public String text(int i) {
+        return mText[i];
+    }
+
+    @Nullable
+    public String desc(int i) {
+        return mDesc[i];
+    }
+
+    @Nullable
+    public String className(int i) {
+        return mClassName[i];
+    }
+
+    @Nullable
+    public String packageName(int i) {
+        return mPackageName[i];
+    }
+
+    @Nullable
+    public String id(int i) {
+        return mId[i];
+    }
+
+    /**
+     * 返回捕获时的真实节点，用于执行点击等操作。
+     */
+    public UiObject getNode(int i) {
+        return mNodes[i];
+    }
+
+    /**
+     * 返回读取快照属性的UiObject，可以直接交给现有的筛选条件使用。可以在多个线程中同时调用。
+     */
+    public UiObject getObject(int i) {
+        NodeView view = mViews[i];
+        if (view == null) {
+            view = new NodeView(this, i);
+            mViews[i] = view;
+        }
+        return view;
+    }
+
+    public UiObject getRootObject() {
+        return getObject(0);
+    }
+
+    /**
+     * 返回节点边界的空间索引，第一次调用时构建。
+     */
+    public synchronized BoundsIndex getBoundsIndex() {
+        if (mBoundsIndex == null) {
+            mBoundsIndex = new BoundsIndex(mBounds, mSize);
+        }
+        return mBoundsIndex;
+    }
+
+    /**
+     * 返回包含坐标(x, y)的最上层节点的序号，没有时返回-1。
+     */
+    public int hitTest(int x, int y) {
+        return getBoundsIndex().hitTest(x, y);
+    }
+
+    /**
+     * 返回以from为根的子树中边界满足条件的节点，type为BoundsIndex.TYPE_*。
+     */
+    public List<UiObject> findByBounds(int from, Rect bounds, int type) {
+        int[] found = getBoundsIndex().find(bounds.left, bounds.top, bounds.right, bounds.bottom, type,
+                from, from + subtreeSize(from));
+        List<UiObject> list = new ArrayList<>(found.length);
+        for (int i : found) {
+            list.add(getObject(i));
+        }
+        return list;
+    }
+
+    /**
+     * 返回真实节点与info相同(同一窗口中的同一个View)的节点序号，没有时返回-1。
+     */
+    public int indexOf(Object info) {
+        for (int i = 0; i < mSize; i++) {
+            if (mNodes[i] != null && info.equals(mNodes[i].getInfo())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回把index处的子树替换为subtree后的新快照，subtree的根对应index处的节点。本快照不变，两者共享子树以外的节点。
+     */
+    public UiSnapshot replaceSubtree(int index, UiSnapshot subtree) {
+        int removed = mSubtreeSize[index];
+        int inserted = subtree.mSize;
+        int delta = inserted - removed;
+        int tail = index + removed;
+        UiSnapshot snapshot = new UiSnapshot();
+        snapshot.mSize = mSize + delta;
+        snapshot.allocate(snapshot.mSize);
+        for (int i = 0; i < index; i++) {
+            snapshot.mParent[i] = mParent[i];
+            snapshot.mDepth[i] = mDepth[i];
+        }
+        for (int i = 0; i < inserted; i++) {
+            snapshot.mParent[index + i] = i == 0 ? mParent[index] : subtree.mParent[i] + index;
+            snapshot.mDepth[index + i] = subtree.mDepth[i] + mDepth[index];
+        }
+        for (int i = tail; i < mSize; i++) {
+            int parent = mParent[i];
+            // 子树之后的节点的父节点不会在子树中
+            snapshot.mParent[i + delta] = parent >= tail ? parent + delta : parent;
+            snapshot.mDepth[i + delta] = mDepth[i];
+        }
+        splice(mFlags, subtree.mFlags, snapshot.mFlags, index, removed, inserted, 1);
+        splice(mDrawingOrder, subtree.mDrawingOrder, snapshot.mDrawingOrder, index, removed, inserted, 1);
+        splice(mBounds, subtree.mBounds, snapshot.mBounds, index, removed, inserted, 4);
+        splice(mText, subtree.mText, snapshot.mText, index, removed, inserted, 1);
+        splice(mDesc, subtree.mDesc, snapshot.mDesc, index, removed, inserted, 1);
+        splice(mClassName, subtree.mClassName, snapshot.mClassName, index, removed, inserted, 1);
+        splice(mPackageName, subtree.mPackageName, snapshot.mPackageName, index, removed, inserted, 1);
+        splice(mId, subtree.mId, snapshot.mId, index, removed, inserted, 1);
+        splice(mNodes, subtree.mNodes, snapshot.mNodes, index, removed, inserted, 1);
+        snapshot.buildChildren();
+        snapshot.mViews = new NodeView[snapshot.mSize];
+        return snapshot;
+    }
+
+    /**
+     * 用src替换[index, index + removed)后写入dst，inserted为insert中的元素个数，unit为每个节点占用的元素个数。
+     */
+    private void splice(Object src, Object insert, Object dst, int index, int removed, int inserted, int unit) {
+        System.arraycopy(src, 0, dst, 0, index * unit);
+        System.arraycopy(insert, 0, dst, index * unit, inserted * unit);
+        System.arraycopy(src, (index + removed) * unit, dst, (index + inserted) * unit, (mSize - index - removed) * unit);
+    }
+
+    /**
+     * 返回只重新读取index处节点属性的新快照，树的结构不变。用于只有文本等属性变化的情况。
+     */
+    public UiSnapshot replaceNode(int index, UiObject node) {
+        UiSnapshot snapshot = new UiSnapshot();
+        snapshot.mSize = mSize;
+        snapshot.mParent = mParent;
+        snapshot.mDepth = mDepth;
+        snapshot.mSubtreeSize = mSubtreeSize;
+        snapshot.mChildrenOffset = mChildrenOffset;
+        snapshot.mChildren = mChildren;
+        snapshot.mFlags = mFlags.clone();
+        snapshot.mDrawingOrder = mDrawingOrder.clone();
+        snapshot.mBounds = mBounds.clone();
+        snapshot.mText = mText.clone();
+        snapshot.mDesc = mDesc.clone();
+        snapshot.mClassName = mClassName.clone();
+        snapshot.mPackageName = mPackageName.clone();
+        snapshot.mId = mId.clone();
+        snapshot.mNodes = mNodes.clone();
+        snapshot.set(index, node, new HashMap<String, String>());
+        snapshot.mViews = new NodeView[mSize];
+        return snapshot;
+    }
+
+    /**
+     * 回收快照持有的所有节点(根节点由调用者负责)。回收后不能再对快照中的节点执行操作。
+     */
+    public void recycle() {
+        for (int i = 1; i < mSize; i++) {
+            if (mNodes[i] != null) {
+                mNodes[i].recycle();
+                mNodes[i] = null;
+            }
+        }
+    }
+
+    private static boolean containsIgnoreCase(String str, String key) {
+        return str != null && str.toLowerCase().contains(key);
+    }
+
+    private static class NodeView extends UiObject {
+
+        private final UiSnapshot mSnapshot;
+        private final int mIndex;
+
+        NodeView(UiSnapshot snapshot, int index) {
+            super(snapshot.mNodes[index] == null ? null : snapshot.mNodes[index].getInfo());
+            mSnapshot = snapshot;
+            mIndex = index;
+        }
+
+        @Nullable
+        @Override
+        public UiObject parent() {
+            int parent = mSnapshot.parent(mIndex);
+            return parent < 0 ? null : mSnapshot.getObject(parent);
+        }
+
+        @Nullable
+        @Override
+        public UiObject child(int i) {
+            return mSnapshot.getObject(mSnapshot.child(mIndex, i));
+        }
+
+        @Override
+        public AccessibilityNodeInfoCompat getChild(int index) {
+            return child(index);
+        }
+
+        @Override
+        public AccessibilityNodeInfoCompat getParent() {
+            return parent();
+        }
+
+        @Override
+        public int getChildCount() {
+            return mSnapshot.childCount(mIndex);
+        }
+
+        @Override
+        public CharSequence getText() {
+            return mSnapshot.text(mIndex);
+        }
+
+        @Override
+        public CharSequence getContentDescription() {
+            return mSnapshot.desc(mIndex);
+        }
+
+        @Override
+        public CharSequence getClassName() {
+            return mSnapshot.className(mIndex);
+        }
+
+        @Override
+        public CharSequence getPackageName() {
+            return mSnapshot.packageName(mIndex);
+        }
+
+        @Override
+        public String getViewIdResourceName() {
+            return mSnapshot.id(mIndex);
+        }
+
+        @Override
+        public int getDrawingOrder() {
+            return mSnapshot.drawingOrder(mIndex);
+        }
+
+        @Override
+        public void getBoundsInScreen(Rect outBounds) {
+            mSnapshot.getBoundsInScreen(mIndex, outBounds);
+        }
+
+        @Override
+        public int getFlags(int mask) {
+            return mSnapshot.flags(mIndex) & mask;
+        }
+
+        private boolean hasFlag(int flag) {
+            return mSnapshot.hasFlags(mIndex, flag);
+        }
+
+        @Override
+        public boolean isCheckable() {
+            return hasFlag(FLAG_CHECKABLE);
+        }
+
+        @Override
+        public boolean isChecked() {
+            return hasFlag(FLAG_CHECKED);
+        }
+
+        @Override
+        public boolean isFocusable() {
+            return hasFlag(FLAG_FOCUSABLE);
+        }
+
+        @Override
+        public boolean isFocused() {
+            return hasFlag(FLAG_FOCUSED);
+        }
+
+        @Override
+        public boolean isVisibleToUser() {
+            return hasFlag(FLAG_VISIBLE_TO_USER);
+        }
+
+        @Override
+        public boolean isAccessibilityFocused() {
+            return hasFlag(FLAG_ACCESSIBILITY_FOCUSED);
+        }
+
+        @Override
+        public boolean isSelected() {
+            return hasFlag(FLAG_SELECTED);
+        }
+
+        @Override
+        public boolean isClickable() {
+            return hasFlag(FLAG_CLICKABLE);
+        }
+
+        @Override
+        public boolean isLongClickable() {
+            return hasFlag(FLAG_LONG_CLICKABLE);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return hasFlag(FLAG_ENABLED);
+        }
+
+        @Override
+        public boolean isPassword() {
+            return hasFlag(FLAG_PASSWORD);
+        }
+
+        @Override
+        public boolean isScrollable() {
+            return hasFlag(FLAG_SCROLLABLE);
+        }
+
+        @Override
+        public boolean isEditable() {
+            return hasFlag(FLAG_EDITABLE);
+        }
+
+        @Override
+        public boolean isContentInvalid() {
+            return hasFlag(FLAG_CONTENT_INVALID);
+        }
+
+        @Override
+        public boolean isContextClickable() {
+            return hasFlag(FLAG_CONTEXT_CLICKABLE);
+        }
+
+        @Override
+        public boolean isMultiLine() {
+            return hasFlag(FLAG_MULTI_LINE);
+        }
+
+        @Override
+        public boolean isDismissable() {
+            return hasFlag(FLAG_DISMISSABLE);
+        }
+
+        /**
+         * 与findAccessibilityNodeInfosByText相同，查找文本或描述包含text(忽略大小写)的节点，但只在快照中查找。
+         */
+        @Override
+        public List<UiObject> findByText(String text) {
+            String key = text.toLowerCase();
+            List<UiObject> list = new ArrayList<>();
+            int end = mIndex + mSnapshot.subtreeSize(mIndex);
+            for (int i = mIndex; i < end; i++) {
+                if (containsIgnoreCase(mSnapshot.text(i), key) || containsIgnoreCase(mSnapshot.desc(i), key)) {
+                    list.add(mSnapshot.getObject(i));
+                }
+            }
+            return list;
+        }
+
+        /**
+         * 快照中的查找遍历了所有节点的文本和描述，结果是完整的。
+         */
+        @Override
+        public boolean isTextLookupComplete() {
+            return true;
+        }
+
+        @Override
+        public List<UiObject> findByViewId(String viewId) {
+            List<UiObject> list = new ArrayList<>();
+            int end = mIndex + mSnapshot.subtreeSize(mIndex);
+            for (int i = mIndex; i < end; i++) {
+                if (viewId.equals(mSnapshot.id(i))) {
+                    list.add(mSnapshot.getObject(i));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public List<UiObject> findByBounds(Rect bounds, int type) {
+            return mSnapshot.findByBounds(mIndex, bounds, type);
+        }
+
+        /**
+         * 快照中的节点由快照统一回收。
+         */
+        @Override
+        public void recycle() {
+
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.stardust.automator;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.stardust.view.accessibility.AccessibilityDelegate;
+import com.stardust.view.accessibility.ContentChangeCoalescer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by Stardust on 2017/6/1.
+ * <p>
+ * 根据无障碍事件维护活动窗口控件树的镜像。窗口状态变化时重新捕获整棵树；内容变化时只重新捕获事件来源的子树，
+ * 只有文本或描述变化时只更新来源节点。更新在后台线程中进行，选择器可以在镜像上查找而不产生跨进程调用。
+ * <p>
+ * 旧的镜像可能仍在被使用，因此镜像中的节点不会被回收，交给GC处理。
+ * <p>
+ * 内容变化事件被合并暂存时就计入收到的事件，镜像在合并后的事件被应用之前不会被当作最新的。
+ */
+
+public class UiTreeMirror implements AccessibilityDelegate, ContentChangeCoalescer.HeldEventListener {
+
+    private static final String TAG = "UiTreeMirror";
+
+    private static final Set<Integer> EVENT_TYPES = new HashSet<>(Arrays.asList(
+            AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED,
+            AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED));
+
+    private static class Change {
+
+        final AccessibilityNodeInfo source;
+        final int contentChangeTypes;
+
+        Change(AccessibilityNodeInfo source, int contentChangeTypes) {
+            this.source = source;
+            this.contentChangeTypes = contentChangeTypes;
+        }
+    }
+
+    private final Object mLock = new Object();
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    };
+    private volatile boolean mEnabled = false;
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private AccessibilityService mService;
+    private UiSnapshot mSnapshot;
+    private List<Change> mChanges = new ArrayList<>();
+    private boolean mRebuild = true;
+    private boolean mScheduled = false;
+    // 收到的事件数与已应用到镜像的事件数，两者相等时镜像是最新的
+    private long mReceived = 0;
+    private long mApplied = 0;
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * 开启时启动后台线程，并在收到下一个事件(或已知服务时立即)捕获整棵树；关闭时丢弃镜像。
+     */
+    public void setEnabled(boolean enabled) {
+        synchronized (mLock) {
+            if (mEnabled == enabled)
+                return;
+            mEnabled = enabled;
+            if (enabled) {
+                mThread = new HandlerThread(TAG);
+                mThread.start();
+                mHandler = new Handler(mThread.getLooper());
+                mRebuild = true;
+                if (mService != null) {
+                    mReceived++;
+                    schedule();
+                }
+            } else {
+                mThread.quit();
+                mThread = null;
+                mHandler = null;
+                recycleChanges();
+                mSnapshot = null;
+                mScheduled = false;
+                mApplied = mReceived;
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public boolean onAccessibilityEvent(AccessibilityService service, AccessibilityEvent event) {
+        if (!mEnabled)
+            return false;
+        AccessibilityNodeInfo source = null;
+        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            source = event.getSource();
+        }
+        synchronized (mLock) {
+            if (!mEnabled) {
+                if (source != null) {
+                    source.recycle();
+                }
+                return false;
+            }
+            mService = service;
+            mReceived++;
+            if (source == null) {
+                mRebuild = true;
+                recycleChanges();
+            } else if (mRebuild) {
+                source.recycle();
+            } else {
+                mChanges.add(new Change(source, event.getContentChangeTypes()));
+            }
+            schedule();
+        }
+        return false;
+    }
+
+    /**
+     * 只标记镜像已落后，不安排更新：暂存的事件之后一定会被转发，届时再更新并追上这里计入的事件。
+     */
+    @Override
+    public void onEventHeld(AccessibilityEvent event) {
+        synchronized (mLock) {
+            if (mEnabled) {
+                mReceived++;
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> getEventTypes() {
+        return EVENT_TYPES;
+    }
+
+    private void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            mHandler.post(mUpdate);
+        }
+    }
+
+    private void recycleChanges() {
+        for (Change change : mChanges) {
+            change.source.recycle();
+        }
+        mChanges.clear();
+    }
+
+    /**
+     * 返回已应用所有收到的事件的镜像。镜像落后于事件或窗口为空时返回null，此时应直接在真实的控件树上查找。
+     */
+    @Nullable
+    public UiSnapshot getSnapshot() {
+        synchronized (mLock) {
+            return mEnabled && mApplied == mReceived ? mSnapshot : null;
+        }
+    }
+
+    /**
+     * 等待镜像跟上已收到的事件，最多等待timeout毫秒。超时返回null。
+     */
+    @Nullable
+    public UiSnapshot awaitSnapshot(long timeout) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeout;
+        synchronized (mLock) {
+            while (mEnabled && mApplied != mReceived) {
+                long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                mLock.wait(remaining);
+            }
+            return mEnabled ? mSnapshot : null;
+        }
+    }
+
+    private void update() {
+        AccessibilityService service;
+        UiSnapshot snapshot;
+        boolean rebuild;
+        List<Change> changes;
+        long received;
+        synchronized (mLock) {
+            if (!mEnabled)
+                return;
+            mScheduled = false;
+            service = mService;
+            snapshot = mSnapshot;
+            rebuild = mRebuild || snapshot == null;
+            mRebuild = false;
+            changes = mChanges;
+            mChanges = new ArrayList<>();
+            received = mReceived;
+        }
+        for (Change change : changes) {
+            UiSnapshot patched = rebuild ? null : apply(snapshot, change);
+            if (patched == null) {
+                rebuild = true;
+                change.source.recycle();
+            } else {
+                snapshot = patched;
+            }
+        }
+        if (rebuild) {
+            snapshot = capture(service);
+        }
+        synchronized (mLock) {
+            if (!mEnabled)
+                return;
+            mSnapshot = snapshot;
+            mApplied = received;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * 把一次内容变化应用到镜像上，来源不在镜像中时返回null，需要重新捕获整棵树。
+     */
+    @Nullable
+    private UiSnapshot apply(UiSnapshot snapshot, Change change) {
+        UiObject source = UiObject.createRoot(change.source);
+        if (snapshot.size() == 0 || source.getWindowId() != snapshot.getNode(0).getWindowId()) {
+            // 其他窗口(例如输入法)的变化与活动窗口无关
+            change.source.recycle();
+            return snapshot;
+        }
+        int index = snapshot.indexOf(change.source);
+        if (index < 0) {
+            return null;
+        }
+        int types = change.contentChangeTypes;
+        if (types != AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED && (types & AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE) == 0) {
+            return snapshot.replaceNode(index, source);
+        }
+        return snapshot.replaceSubtree(index, UiSnapshot.capture(source));
+    }
+
+    @Nullable
+    private static UiSnapshot capture(AccessibilityService service) {
+        AccessibilityNodeInfo root = service == null ? null : service.getRootInActiveWindow();
+        if (root == null) {
+            return null;
+        }
+        return UiSnapshot.capture(UiObject.createRoot(root));
+    }
+}
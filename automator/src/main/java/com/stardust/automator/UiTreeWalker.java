@@ -0,0 +1,120 @@
+package com.stardust.automator;
+
+import java.util.Arrays;
+
+/**
+ * Created by Stardust on 2017/5/28.
+ * <p>
+ * 使用显式栈按先序遍历控件树，不会因为树太深而栈溢出。
+ * <p>
+ * 遍历中获取的节点由遍历器负责回收：节点的子树遍历完后即被回收，除非访问时返回了{@link #RETAIN}，
+ * 此时节点交给访问者负责。根节点由调用者负责，不会被回收。
+ */
+
+public class UiTreeWalker {
+
+    public interface Visitor {
+
+        /**
+         * @param depth 节点的深度，根节点为0
+         * @return {@link #CONTINUE}, {@link #SKIP_CHILDREN}或{@link #STOP}，可以与{@link #RETAIN}组合
+         */
+        int visit(UiObject node, int depth);
+    }
+
+    /**
+     * 继续遍历该节点的子节点
+     */
+    public static final int CONTINUE = 0;
+    /**
+     * 不遍历该节点的子节点
+     */
+    public static final int SKIP_CHILDREN = 1;
+    /**
+     * 结束遍历
+     */
+    public static final int STOP = 2;
+    /**
+     * 保留该节点，遍历器不再回收它
+     */
+    public static final int RETAIN = 1 << 8;
+
+    private static final int ACTION_MASK = 0xff;
+    private static final int INITIAL_DEPTH = 32;
+
+    public static void walk(UiObject root, Visitor visitor) {
+        new UiTreeWalker().walkFrom(root, visitor);
+    }
+
+    private UiObject[] mNodes = new UiObject[INITIAL_DEPTH];
+    private int[] mNextChild = new int[INITIAL_DEPTH];
+    private int[] mChildCount = new int[INITIAL_DEPTH];
+    private boolean[] mRetained = new boolean[INITIAL_DEPTH];
+    private int mTop = -1;
+
+    /**
+     * 从root开始遍历。同一个遍历器可以重复使用，但不能同时进行多次遍历。
+     */
+    public void walkFrom(UiObject root, Visitor visitor) {
+        if (root == null)
+            return;
+        int result = visitor.visit(root, 0);
+        int action = result & ACTION_MASK;
+        if (action != CONTINUE)
+            return;
+        push(root, true);
+        try {
+            while (mTop >= 0) {
+                int top = mTop;
+                if (mNextChild[top] >= mChildCount[top]) {
+                    pop();
+                    continue;
+                }
+                UiObject child = mNodes[top].child(mNextChild[top]++);
+                if (child == null)
+                    continue;
+                result = visitor.visit(child, top + 1);
+                action = result & ACTION_MASK;
+                boolean retained = (result & RETAIN) != 0;
+                if (action == CONTINUE) {
+                    push(child, retained);
+                    continue;
+                }
+                if (!retained) {
+                    child.recycle();
+                }
+                if (action == STOP) {
+                    return;
+                }
+            }
+        } finally {
+            while (mTop >= 0) {
+                pop();
+            }
+        }
+    }
+
+    private void push(UiObject node, boolean retained) {
+        mTop++;
+        if (mTop == mNodes.length) {
+            int capacity = mTop * 2;
+            mNodes = Arrays.copyOf(mNodes, capacity);
+            mNextChild = Arrays.copyOf(mNextChild, capacity);
+            mChildCount = Arrays.copyOf(mChildCount, capacity);
+            mRetained = Arrays.copyOf(mRetained, capacity);
+        }
+        mNodes[mTop] = node;
+        mNextChild[mTop] = 0;
+        mChildCount[mTop] = node.getChildCount();
+        mRetained[mTop] = retained;
+    }
+
+    private void pop() {
+        if (!mRetained[mTop]) {
+            mNodes[mTop].recycle();
+        }
+        mNodes[mTop] = null;
+        mTop--;
+    }
+
+}
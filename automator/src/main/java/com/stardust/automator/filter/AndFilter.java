@@ -0,0 +1,141 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/5/20.
+ * <p>
+ * 把多个DfsFilter合并为一个，只遍历一次控件树，每个节点按顺序依次判断各个条件。
+ * <p>
+ * 判断顺序根据{@link FilterStats}中各条件的耗时和通过率调整，使每个节点的期望耗时最小；没有统计时按getCost()从低到高。
+ * 每SAMPLE_INTERVAL个节点抽样一次，抽样的节点上判断所有条件并记录耗时，这样排在后面的条件也能得到不受前面条件影响的统计。
+ */
+
+public class AndFilter extends DfsFilter {
+
+    private static final int SAMPLE_INTERVAL = 32;
+    // 每抽样这么多次重新计算一次顺序
+    private static final int REORDER_INTERVAL = 16;
+
+    private final DfsFilter[] mFilters;
+    private final FilterStats[] mStats;
+    private final int mCost;
+    // 当前的判断顺序，元素为mFilters的下标。重新排序时整体替换
+    private volatile int[] mOrder;
+    // 可能被多个线程同时修改(见ParallelSnapshotFilter)，计数不准确只影响抽样的时机
+    private int mCounter;
+
+    public AndFilter(List<DfsFilter> filters) {
+        mFilters = filters.toArray(new DfsFilter[filters.size()]);
+        mStats = new FilterStats[mFilters.length];
+        int cost = COST_LOW;
+        for (int i = 0; i < mFilters.length; i++) {
+            mStats[i] = FilterStats.of(mFilters[i].getStatsKey());
+            cost = Math.max(cost, mFilters[i].getCost());
+        }
+        mCost = cost;
+        mOrder = computeOrder();
+    }
+
+    private int[] computeOrder() {
+        final double[] ranks = new double[mFilters.length];
+        List<Integer> order = new ArrayList<>(mFilters.length);
+        for (int i = 0; i < mFilters.length; i++) {
+            ranks[i] = mStats[i].rank(mFilters[i].getCost());
+            order.add(i);
+        }
+        // 稳定排序，估计相同的条件保持原有顺序
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(ranks[o1], ranks[o2]);
+            }
+        });
+        int[] result = new int[order.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = order.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 返回当前的判断顺序
+     */
+    public List<DfsFilter> getFilters() {
+        int[] order = mOrder;
+        List<DfsFilter> filters = new ArrayList<>(order.length);
+        for (int i : order) {
+            filters.add(mFilters[i]);
+        }
+        return filters;
+    }
+
+    /**
+     * 从所有条件中选出选择性最高的NativeQuery作为候选节点的来源，其余条件只在候选节点上判断。
+     * 有边界条件时优先使用边界查找，在真实节点上回答不了时再使用id或文本查找。
+     */
+    private static NativeQuery selectNativeQuery(DfsFilter[] filters) {
+        NativeQuery selected = null;
+        NativeQuery bounds = null;
+        for (DfsFilter filter : filters) {
+            NativeQuery query = filter.getNativeQuery();
+            if (query == null) {
+                continue;
+            }
+            if (query.getType() == NativeQuery.TYPE_BOUNDS) {
+                if (query.isMoreSelectiveThan(bounds)) {
+                    bounds = query;
+                }
+            } else if (query.isMoreSelectiveThan(selected)) {
+                selected = query;
+            }
+        }
+        return bounds == null ? selected : bounds.orElse(selected);
+    }
+
+    @Override
+    protected boolean isIncluded(UiObject nodeInfo) {
+        int counter = ++mCounter;
+        if (counter % SAMPLE_INTERVAL == 0) {
+            return isIncludedSampled(nodeInfo, counter / SAMPLE_INTERVAL % REORDER_INTERVAL == 0);
+        }
+        for (int i : mOrder) {
+            if (!mFilters[i].isIncluded(nodeInfo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isIncludedSampled(UiObject nodeInfo, boolean reorder) {
+        boolean included = true;
+        for (int i = 0; i < mFilters.length; i++) {
+            long start = System.nanoTime();
+            boolean passed = mFilters[i].isIncluded(nodeInfo);
+            mStats[i].record(System.nanoTime() - start, passed);
+            included &= passed;
+        }
+        if (reorder) {
+            mOrder = computeOrder();
+        }
+        return included;
+    }
+
+    @Override
+    protected int getCost() {
+        return mCost;
+    }
+
+    /**
+     * 每次查找时重新选择，因为有的条件(例如不含包名的id)的NativeQuery随当前应用变化，而AndFilter可能被缓存复用。
+     */
+    @Override
+    public NativeQuery getNativeQuery() {
+        return selectNativeQuery(mFilters);
+    }
+}
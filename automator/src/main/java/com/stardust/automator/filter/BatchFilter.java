@@ -0,0 +1,99 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+import com.stardust.automator.UiTreeWalker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ * <p>
+ * 在一次遍历中判断多个筛选条件。条件按位置排定优先级：某个条件找到limit个节点后，位置在它之后的条件不再判断；
+ * 位置最前的条件找够时结束遍历。
+ * <p>
+ * 有NativeQuery且能在root上回答的条件先按位置顺序用查找结果筛选，不参与遍历；只有其余的条件需要遍历控件树。
+ */
+
+public class BatchFilter {
+
+    /**
+     * @param filters 可以包含null，表示该位置不参与本次遍历
+     * @return 与filters一一对应的结果。结果中的节点由调用者负责回收，同一个节点可能出现在多个结果中
+     */
+    public static List<List<UiObject>> filter(UiObject root, DfsFilter[] filters, int limit) {
+        List<List<UiObject>> found = new ArrayList<>(filters.length);
+        for (int i = 0; i < filters.length; i++) {
+            found.add(new ArrayList<UiObject>());
+        }
+        DfsFilter[] walked = filters.clone();
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i] == null || filters[i].getNativeQuery() == null)
+                continue;
+            List<UiObject> candidates = filters[i].getNativeQuery().query(root);
+            if (candidates == null)
+                continue;
+            walked[i] = null;
+            List<UiObject> list = found.get(i);
+            for (UiObject candidate : candidates) {
+                if (list.size() < limit && filters[i].isIncluded(candidate)) {
+                    list.add(candidate);
+                } else if (candidate != root) {
+                    candidate.recycle();
+                }
+            }
+            if (list.size() >= limit) {
+                // 位置在它之后的条件不再判断
+                Arrays.fill(walked, i + 1, walked.length, null);
+                break;
+            }
+        }
+        BatchVisitor visitor = new BatchVisitor(walked, limit, found);
+        if (visitor.mFirst < walked.length) {
+            UiTreeWalker.walk(root, visitor);
+        }
+        return found;
+    }
+
+    private static class BatchVisitor implements UiTreeWalker.Visitor {
+
+        private final DfsFilter[] mFilters;
+        private final int mLimit;
+        private final List<List<UiObject>> mFound;
+        private final int mFirst;
+        // 已找够limit个节点的条件中位置最前的一个
+        private int mBest;
+
+        BatchVisitor(DfsFilter[] filters, int limit, List<List<UiObject>> found) {
+            mFilters = filters;
+            mLimit = limit;
+            mFound = found;
+            int first = filters.length;
+            for (int i = 0; i < filters.length; i++) {
+                if (filters[i] != null && first == filters.length) {
+                    first = i;
+                }
+            }
+            mFirst = first;
+            mBest = filters.length;
+        }
+
+        @Override
+        public int visit(UiObject node, int depth) {
+            boolean retained = false;
+            for (int i = mFirst; i < mBest; i++) {
+                if (mFilters[i] == null || !mFilters[i].isIncluded(node))
+                    continue;
+                List<UiObject> list = mFound.get(i);
+                list.add(node);
+                retained = true;
+                if (list.size() >= mLimit) {
+                    mBest = i;
+                }
+            }
+            int action = mBest == mFirst ? UiTreeWalker.STOP : UiTreeWalker.CONTINUE;
+            return retained ? action | UiTreeWalker.RETAIN : action;
+        }
+    }
+}
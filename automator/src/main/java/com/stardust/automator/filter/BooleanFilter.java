@@ -4,9 +4,7 @@ import android.os.Build;
 import android.support.annotation.RequiresApi;
 
 import com.stardust.automator.UiObject;
-
-import java.util.HashMap;
-import java.util.Map;
+import com.stardust.automator.UiSnapshot;
 
 /**
  * Created by Stardust on 2017/3/9.
@@ -14,20 +12,14 @@ import java.util.Map;
 
 public class BooleanFilter extends DfsFilter {
 
-    private static Map<BooleanSupplier, BooleanFilter[]> cache = new HashMap<>();
-
-
+    /**
+     * 对于UiSnapshot.FLAG_*中的属性返回预先创建的实例，其他条件每次新建。
+     */
     public static BooleanFilter get(BooleanSupplier supplier, boolean b) {
-        BooleanFilter[] booleanFilters = cache.get(supplier);
-        if (booleanFilters == null) {
-            booleanFilters = new BooleanFilter[2];
-            cache.put(supplier, booleanFilters);
+        if (supplier instanceof FlagSupplier) {
+            return FILTERS[bitOf(((FlagSupplier) supplier).mFlag)][b ? 1 : 0];
         }
-        int i = b ? 1 : 0;
-        if (booleanFilters[i] == null) {
-            booleanFilters[i] = new BooleanFilter(supplier, b);
-        }
-        return booleanFilters[i];
+        return new BooleanFilter(supplier, b);
     }
 
     public interface BooleanSupplier {
@@ -36,7 +28,19 @@ public class BooleanFilter extends DfsFilter {
 
     }
 
-    public static final BooleanSupplier CHECKABLE = new BooleanSupplier() {
+    /**
+     * 对应UiSnapshot.FLAG_*中一位的属性，同一选择器中的这类条件会被合并为一个FlagsFilter。
+     */
+    private static abstract class FlagSupplier implements BooleanSupplier {
+
+        final int mFlag;
+
+        FlagSupplier(int flag) {
+            mFlag = flag;
+        }
+    }
+
+    public static final BooleanSupplier CHECKABLE = new FlagSupplier(UiSnapshot.FLAG_CHECKABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -44,7 +48,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier CHECKED = new BooleanSupplier() {
+    public static final BooleanSupplier CHECKED = new FlagSupplier(UiSnapshot.FLAG_CHECKED) {
 
         @Override
         public boolean get(UiObject node) {
@@ -52,7 +56,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier FOCUSABLE = new BooleanSupplier() {
+    public static final BooleanSupplier FOCUSABLE = new FlagSupplier(UiSnapshot.FLAG_FOCUSABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -60,7 +64,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier FOCUSED = new BooleanSupplier() {
+    public static final BooleanSupplier FOCUSED = new FlagSupplier(UiSnapshot.FLAG_FOCUSED) {
 
         @Override
         public boolean get(UiObject node) {
@@ -68,7 +72,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier VISIBLE_TO_USER = new BooleanSupplier() {
+    public static final BooleanSupplier VISIBLE_TO_USER = new FlagSupplier(UiSnapshot.FLAG_VISIBLE_TO_USER) {
 
         @Override
         public boolean get(UiObject node) {
@@ -76,7 +80,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier ACCESSIBILITY_FOCUSED = new BooleanSupplier() {
+    public static final BooleanSupplier ACCESSIBILITY_FOCUSED = new FlagSupplier(UiSnapshot.FLAG_ACCESSIBILITY_FOCUSED) {
 
         @Override
         public boolean get(UiObject node) {
@@ -84,7 +88,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier SELECTED = new BooleanSupplier() {
+    public static final BooleanSupplier SELECTED = new FlagSupplier(UiSnapshot.FLAG_SELECTED) {
 
         @Override
         public boolean get(UiObject node) {
@@ -92,7 +96,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier CLICKABLE = new BooleanSupplier() {
+    public static final BooleanSupplier CLICKABLE = new FlagSupplier(UiSnapshot.FLAG_CLICKABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -100,7 +104,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier LONG_CLICKABLE = new BooleanSupplier() {
+    public static final BooleanSupplier LONG_CLICKABLE = new FlagSupplier(UiSnapshot.FLAG_LONG_CLICKABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -108,7 +112,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier ENABLED = new BooleanSupplier() {
+    public static final BooleanSupplier ENABLED = new FlagSupplier(UiSnapshot.FLAG_ENABLED) {
 
         @Override
         public boolean get(UiObject node) {
@@ -117,7 +121,7 @@ public class BooleanFilter extends DfsFilter {
     };
 
 
-    public static final BooleanSupplier PASSWORD = new BooleanSupplier() {
+    public static final BooleanSupplier PASSWORD = new FlagSupplier(UiSnapshot.FLAG_PASSWORD) {
 
         @Override
         public boolean get(UiObject node) {
@@ -125,7 +129,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier SCROLLABLE = new BooleanSupplier() {
+    public static final BooleanSupplier SCROLLABLE = new FlagSupplier(UiSnapshot.FLAG_SCROLLABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -133,14 +137,14 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier EDITABLE = new BooleanSupplier() {
+    public static final BooleanSupplier EDITABLE = new FlagSupplier(UiSnapshot.FLAG_EDITABLE) {
 
         @Override
         public boolean get(UiObject node) {
             return node.isEditable();
         }
     };
-    public static final BooleanSupplier CONTENT_INVALID = new BooleanSupplier() {
+    public static final BooleanSupplier CONTENT_INVALID = new FlagSupplier(UiSnapshot.FLAG_CONTENT_INVALID) {
 
         @Override
         public boolean get(UiObject node) {
@@ -148,7 +152,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier CONTEXT_CLICKABLE = new BooleanSupplier() {
+    public static final BooleanSupplier CONTEXT_CLICKABLE = new FlagSupplier(UiSnapshot.FLAG_CONTEXT_CLICKABLE) {
 
         @RequiresApi(api = Build.VERSION_CODES.M)
         @Override
@@ -157,7 +161,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier MULTI_LINE = new BooleanSupplier() {
+    public static final BooleanSupplier MULTI_LINE = new FlagSupplier(UiSnapshot.FLAG_MULTI_LINE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -165,7 +169,7 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
-    public static final BooleanSupplier DISMISSABLE = new BooleanSupplier() {
+    public static final BooleanSupplier DISMISSABLE = new FlagSupplier(UiSnapshot.FLAG_DISMISSABLE) {
 
         @Override
         public boolean get(UiObject node) {
@@ -173,6 +177,26 @@ public class BooleanFilter extends DfsFilter {
         }
     };
 
+    // 以标志位的序号为下标，每个属性的false/true两个条件。类加载时创建，之后只读
+    private static final BooleanFilter[][] FILTERS = createFilters(CHECKABLE, CHECKED, FOCUSABLE, FOCUSED,
+            VISIBLE_TO_USER, ACCESSIBILITY_FOCUSED, SELECTED, CLICKABLE, LONG_CLICKABLE, ENABLED, PASSWORD,
+            SCROLLABLE, EDITABLE, CONTENT_INVALID, CONTEXT_CLICKABLE, MULTI_LINE, DISMISSABLE);
+
+    private static BooleanFilter[][] createFilters(BooleanSupplier... suppliers) {
+        BooleanFilter[][] filters = new BooleanFilter[Integer.SIZE][];
+        for (BooleanSupplier supplier : suppliers) {
+            filters[bitOf(((FlagSupplier) supplier).mFlag)] = new BooleanFilter[]{
+                    new BooleanFilter(supplier, false),
+                    new BooleanFilter(supplier, true)
+            };
+        }
+        return filters;
+    }
+
+    private static int bitOf(int flag) {
+        return Integer.numberOfTrailingZeros(flag);
+    }
+
     private BooleanSupplier mBooleanSupplier;
     private boolean mExceptedValue;
 
@@ -186,4 +210,20 @@ public class BooleanFilter extends DfsFilter {
         return nodeInfo != null && mBooleanSupplier.get(nodeInfo) == mExceptedValue;
     }
 
+    @Override
+    protected int getCost() {
+        return COST_LOW;
+    }
+
+    /**
+     * 返回对应的UiSnapshot.FLAG_*，不对应任何标志位时返回0。
+     */
+    public int getFlag() {
+        return mBooleanSupplier instanceof FlagSupplier ? ((FlagSupplier) mBooleanSupplier).mFlag : 0;
+    }
+
+    public boolean getExpectedValue() {
+        return mExceptedValue;
+    }
+
 }
@@ -2,8 +2,8 @@ package com.stardust.automator.filter;
 
 import android.graphics.Rect;
 
+import com.stardust.automator.BoundsIndex;
 import com.stardust.automator.UiObject;
-import com.stardust.view.accessibility.AccessibilityNodeInfoHelper;
 
 /**
  * Created by Stardust on 2017/3/9.
@@ -11,9 +11,16 @@ import com.stardust.view.accessibility.AccessibilityNodeInfoHelper;
 
 public class BoundsFilter extends DfsFilter {
 
-    public static final int TYPE_EQUALS = 0;
-    public static final int TYPE_INSIDE = 1;
-    public static final int TYPE_CONTAINS = 2;
+    public static final int TYPE_EQUALS = BoundsIndex.TYPE_EQUALS;
+    public static final int TYPE_INSIDE = BoundsIndex.TYPE_INSIDE;
+    public static final int TYPE_CONTAINS = BoundsIndex.TYPE_CONTAINS;
+
+    private static final ThreadLocal<Rect> BOUNDS_IN_SCREEN = new ThreadLocal<Rect>() {
+        @Override
+        protected Rect initialValue() {
+            return new Rect();
+        }
+    };
 
     private Rect mBounds;
     private int mType;
@@ -21,16 +28,14 @@ public class BoundsFilter extends DfsFilter {
     public BoundsFilter(Rect bounds, int type) {
         mBounds = bounds;
         mType = type;
+        setNativeQuery(NativeQuery.byBounds(bounds, type));
     }
 
     @Override
     protected boolean isIncluded(UiObject nodeInfo) {
-        if (mType == TYPE_CONTAINS) {
-            return AccessibilityNodeInfoHelper.getBoundsInScreen(nodeInfo).contains(mBounds);
-        }
-        Rect boundsInScreen = AccessibilityNodeInfoHelper.getBoundsInScreen(nodeInfo);
-        if (mType == TYPE_EQUALS)
-            return boundsInScreen.equals(mBounds);
-        return mBounds.contains(boundsInScreen);
+        Rect boundsInScreen = BOUNDS_IN_SCREEN.get();
+        nodeInfo.getBoundsInScreen(boundsInScreen);
+        return BoundsIndex.matches(mType, mBounds.left, mBounds.top, mBounds.right, mBounds.bottom,
+                boundsInScreen.left, boundsInScreen.top, boundsInScreen.right, boundsInScreen.bottom);
     }
 }
@@ -0,0 +1,168 @@
+package com.stardust.automator.filter;
+
+import android.support.annotation.Nullable;
+
+import com.stardust.util.LimitedHashMap;
+
+import java.util.regex.Pattern;
+
+/**
+ * Created by Stardust on 2017/5/25.
+ * <p>
+ * 预编译的正则表达式。编译结果在所有选择器和脚本之间共享，并由一个有容量限制的LRU缓存保存。
+ * 只由普通字符和首尾的".*"组成的表达式会退化为equals/startsWith/endsWith/contains判断。
+ */
+
+public abstract class CompiledRegex {
+
+    private static final int CACHE_SIZE = 64;
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String ANY = ".*";
+
+    private static final LimitedHashMap<String, CompiledRegex> CACHE = new LimitedHashMap<>(CACHE_SIZE);
+
+    public static CompiledRegex compile(String regex) {
+        synchronized (CACHE) {
+            CompiledRegex compiled = CACHE.get(regex);
+            if (compiled == null) {
+                compiled = create(regex);
+                CACHE.put(regex, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    private static CompiledRegex create(String regex) {
+        boolean anyPrefix = regex.startsWith(ANY);
+        String literal = anyPrefix ? regex.substring(ANY.length()) : regex;
+        boolean anySuffix = literal.endsWith(ANY) && !literal.endsWith("\\" + ANY);
+        if (anySuffix) {
+            literal = literal.substring(0, literal.length() - ANY.length());
+        }
+        if (!isLiteral(literal)) {
+            return new PatternRegex(regex);
+        }
+        if (anyPrefix && anySuffix) {
+            return new LiteralRegex(regex, literal, LiteralRegex.CONTAINS);
+        }
+        if (anyPrefix) {
+            return new LiteralRegex(regex, literal, LiteralRegex.ENDS_WITH);
+        }
+        if (anySuffix) {
+            return new LiteralRegex(regex, literal, LiteralRegex.STARTS_WITH);
+        }
+        return new LiteralRegex(regex, literal, LiteralRegex.EQUALS);
+    }
+
+    private static boolean isLiteral(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (META_CHARACTERS.indexOf(str.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final String mRegex;
+
+    CompiledRegex(String regex) {
+        mRegex = regex;
+    }
+
+    public abstract boolean matches(String input);
+
+    /**
+     * 表达式退化为字符串判断时返回其中的字符串，所有匹配的输入都包含该字符串；否则返回null。
+     */
+    @Nullable
+    public String getLiteral() {
+        return null;
+    }
+
+    public boolean isLiteral() {
+        return getLiteral() != null;
+    }
+
+    public String getRegex() {
+        return mRegex;
+    }
+
+    @Override
+    public String toString() {
+        return mRegex;
+    }
+
+    private static class PatternRegex extends CompiledRegex {
+
+        private final Pattern mPattern;
+
+        PatternRegex(String regex) {
+            super(regex);
+            mPattern = Pattern.compile(regex);
+        }
+
+        @Override
+        public boolean matches(String input) {
+            return mPattern.matcher(input).matches();
+        }
+    }
+
+    private static class LiteralRegex extends CompiledRegex {
+
+        static final int EQUALS = 0;
+        static final int STARTS_WITH = 1;
+        static final int ENDS_WITH = 2;
+        static final int CONTAINS = 3;
+
+        private final String mLiteral;
+        private final int mType;
+        private Pattern mPattern;
+
+        LiteralRegex(String regex, String literal, int type) {
+            super(regex);
+            mLiteral = literal;
+            mType = type;
+        }
+
+        @Override
+        public boolean matches(String input) {
+            if (mType == EQUALS) {
+                return input.equals(mLiteral);
+            }
+            // "."不匹配行结束符，输入中含有行结束符时交给Pattern处理
+            if (containsLineTerminator(input)) {
+                return getPattern().matcher(input).matches();
+            }
+            switch (mType) {
+                case STARTS_WITH:
+                    return input.startsWith(mLiteral);
+                case ENDS_WITH:
+                    return input.endsWith(mLiteral);
+                default:
+                    return input.contains(mLiteral);
+            }
+        }
+
+        private Pattern getPattern() {
+            if (mPattern == null) {
+                mPattern = Pattern.compile(getRegex());
+            }
+            return mPattern;
+        }
+
+        private static boolean containsLineTerminator(String input) {
+            for (int i = 0; i < input.length(); i++) {
+                char c = input.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String getLiteral() {
+            return mLiteral;
+        }
+    }
+}
@@ -17,22 +17,24 @@ public class DescFilter {
     };
 
     public static ListFilter equals(String text) {
-        return new StringEqualsFilter(text, DESC_GETTER);
+        return new StringEqualsFilter(text, DESC_GETTER).setNativeQuery(NativeQuery.byText(text));
     }
 
     public static ListFilter contains(String str) {
-        return new StringContainsFilter(str, DESC_GETTER);
+        return new StringContainsFilter(str, DESC_GETTER).setNativeQuery(NativeQuery.byText(str));
     }
 
     public static ListFilter startsWith(String prefix) {
-        return new StringStartsWithFilter(prefix, DESC_GETTER);
+        return new StringStartsWithFilter(prefix, DESC_GETTER).setNativeQuery(NativeQuery.byText(prefix));
     }
 
     public static ListFilter endsWith(String suffix) {
-        return new StringEndsWithFilter(suffix, DESC_GETTER);
+        return new StringEndsWithFilter(suffix, DESC_GETTER).setNativeQuery(NativeQuery.byText(suffix));
     }
     public static ListFilter matches(String regex) {
-        return new StringMatchesFilter(regex, DESC_GETTER);
+        StringMatchesFilter filter = new StringMatchesFilter(regex, DESC_GETTER);
+        filter.setNativeQuery(NativeQuery.byText(filter.getRegex().getLiteral()));
+        return filter;
     }
 
     private DescFilter(){
@@ -1,8 +1,12 @@
 package com.stardust.automator.filter;
 
+import android.support.annotation.Nullable;
+
 import com.stardust.automator.UiObject;
+import com.stardust.automator.UiTreeWalker;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -11,42 +15,141 @@ import java.util.List;
 
 public abstract class DfsFilter implements ListFilter, Filter {
 
+    public static final int COST_LOW = 0;
+    public static final int COST_NORMAL = 1;
+    public static final int COST_HIGH = 2;
+
+    private NativeQuery mNativeQuery;
+    private String mStatsKey;
+
     @Override
     public List<UiObject> filter(List<UiObject> nodes) {
+        return filter(nodes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 与{@link #filter(List)}相同，但找到limit个符合条件的节点后立即停止遍历。
+     */
+    public List<UiObject> filter(List<UiObject> nodes, int limit) {
+        return filter(nodes, limit, SearchOptions.DEFAULT);
+    }
+
+    /**
+     * 按options指定的深度范围和遍历顺序筛选，深度超过上限的子树不会被访问。
+     */
+    public List<UiObject> filter(List<UiObject> nodes, int limit, SearchOptions options) {
         ArrayList<UiObject> list = new ArrayList<>();
+        NativeQuery query = options.isDefault() ? getNativeQuery() : null;
         for (UiObject node : nodes) {
-            if (isIncluded(node)) {
-                list.add(node);
+            if (list.size() >= limit)
+                break;
+            List<UiObject> candidates = query == null ? null : query.query(node);
+            if (candidates != null) {
+                filterCandidates(candidates, list, limit);
+                continue;
+            }
+            if (options.isBreadthFirst()) {
+                filterBreadthFirst(node, list, limit, options);
+                continue;
             }
-            filterChildren(node, list);
+            filterTree(node, list, limit, options);
         }
         return list;
     }
 
     public List<UiObject> filter(UiObject node) {
-        ArrayList<UiObject> list = new ArrayList<>();
-        if (isIncluded(node)) {
-            list.add(node);
-        }
-        filterChildren(node, list);
-        return list;
+        return filter(Collections.singletonList(node), Integer.MAX_VALUE);
     }
 
-    private void filterChildren(UiObject parent, List<UiObject> list) {
-        for (int i = 0; i < parent.getChildCount(); i++) {
-            UiObject child = parent.child(i);
-            if (child == null)
-                continue;
-            boolean included = isIncluded(child);
-            if (included) {
-                list.add(child);
+    private void filterTree(UiObject root, final List<UiObject> list, final int limit, final SearchOptions options) {
+        UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                if (list.size() >= limit)
+                    return UiTreeWalker.STOP;
+                int action = depth >= options.getMaxDepth() ? UiTreeWalker.SKIP_CHILDREN : UiTreeWalker.CONTINUE;
+                if (depth < options.getMinDepth() || !isIncluded(node))
+                    return action;
+                list.add(node);
+                if (list.size() >= limit)
+                    action = UiTreeWalker.STOP;
+                return action | UiTreeWalker.RETAIN;
             }
-            filterChildren(child, list);
-            if (!included) {
-                child.recycle();
+        });
+    }
+
+    /**
+     * 逐层筛选，适合目标离根节点较近的情况。
+     */
+    private void filterBreadthFirst(UiObject root, List<UiObject> list, int limit, SearchOptions options) {
+        List<UiObject> level = Collections.singletonList(root);
+        int depth = 0;
+        while (!level.isEmpty() && depth <= options.getMaxDepth()) {
+            boolean expand = depth < options.getMaxDepth();
+            List<UiObject> next = expand ? new ArrayList<UiObject>() : Collections.<UiObject>emptyList();
+            for (UiObject node : level) {
+                boolean included = list.size() < limit && depth >= options.getMinDepth() && isIncluded(node);
+                if (included) {
+                    list.add(node);
+                }
+                if (expand && list.size() < limit) {
+                    for (int i = 0; i < node.getChildCount(); i++) {
+                        UiObject child = node.child(i);
+                        if (child != null) {
+                            next.add(child);
+                        }
+                    }
+                }
+                if (!included && node != root) {
+                    node.recycle();
+                }
+            }
+            level = next;
+            depth++;
+        }
+    }
+
+    private void filterCandidates(List<UiObject> candidates, List<UiObject> list, int limit) {
+        for (UiObject candidate : candidates) {
+            if (list.size() < limit && isIncluded(candidate)) {
+                list.add(candidate);
+            } else {
+                candidate.recycle();
             }
         }
     }
 
     protected abstract boolean isIncluded(UiObject nodeInfo);
+
+    /**
+     * 返回isIncluded的相对开销，组合筛选时开销低的条件会先被判断。
+     */
+    protected int getCost() {
+        return COST_NORMAL;
+    }
+
+    /**
+     * 返回一个结果包含所有符合本条件节点的NativeQuery。不为null且能在根节点上回答时，筛选只在其结果中进行，不再遍历控件树。
+     */
+    @Nullable
+    public NativeQuery getNativeQuery() {
+        return mNativeQuery;
+    }
+
+    /**
+     * 返回记录运行时统计所用的条件种类，见{@link FilterStats}。未设置时为类名。
+     */
+    public String getStatsKey() {
+        return mStatsKey == null ? getClass().getName() : mStatsKey;
+    }
+
+    public DfsFilter setStatsKey(String statsKey) {
+        mStatsKey = statsKey;
+        return this;
+    }
+
+    DfsFilter setNativeQuery(@Nullable NativeQuery nativeQuery) {
+        mNativeQuery = nativeQuery;
+        return this;
+    }
 }
@@ -0,0 +1,163 @@
+package com.stardust.automator.filter;
+
+import android.support.annotation.Nullable;
+
+import com.stardust.automator.UiObject;
+import com.stardust.automator.UiObjectCursor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/6/5.
+ * <p>
+ * 按先序逐步遍历控件树的游标，每次调用next()只遍历到下一个符合条件的节点为止，结果与{@link DfsFilter#filter(List, int, SearchOptions)}的顺序相同。
+ * 不支持广度优先顺序。
+ * <p>
+ * 节点的回收与{@link com.stardust.automator.UiTreeWalker}相同：返回的节点交给调用者，其他节点在其子树遍历完或close()时被回收，根节点不会被回收。
+ * 返回的节点的子树可能还没有遍历，因此close()之前调用者不能回收它们。
+ */
+
+public class FilterCursor implements UiObjectCursor {
+
+    private static final int INITIAL_DEPTH = 32;
+
+    private final DfsFilter mFilter;
+    private final SearchOptions mOptions;
+    // 查找的起点，归调用者所有
+    private final UiObject mStart;
+    private UiObject mRoot;
+    // NativeQuery能回答时只在其结果中筛选
+    private List<UiObject> mCandidates;
+    private int mNextCandidate;
+    private UiObject[] mNodes = new UiObject[INITIAL_DEPTH];
+    private int[] mNextChild = new int[INITIAL_DEPTH];
+    private int[] mChildCount = new int[INITIAL_DEPTH];
+    private boolean[] mRetained = new boolean[INITIAL_DEPTH];
+    private int mTop = -1;
+    private boolean mClosed;
+
+    public FilterCursor(UiObject root, DfsFilter filter, SearchOptions options) {
+        if (options.isBreadthFirst()) {
+            throw new IllegalArgumentException("breadth first search is not supported");
+        }
+        mFilter = filter;
+        mOptions = options;
+        mStart = root;
+        NativeQuery query = options.isDefault() ? filter.getNativeQuery() : null;
+        mCandidates = query == null ? null : query.query(root);
+        if (mCandidates == null) {
+            mRoot = root;
+        }
+    }
+
+    @Nullable
+    @Override
+    public UiObject next() {
+        if (mClosed)
+            return null;
+        if (mCandidates != null) {
+            return nextCandidate();
+        }
+        if (mRoot != null) {
+            UiObject root = mRoot;
+            mRoot = null;
+            boolean included = mOptions.getMinDepth() <= 0 && mFilter.isIncluded(root);
+            if (mOptions.getMaxDepth() > 0) {
+                push(root, true);
+            }
+            if (included) {
+                return root;
+            }
+        }
+        while (mTop >= 0) {
+            int top = mTop;
+            if (mNextChild[top] >= mChildCount[top]) {
+                pop();
+                continue;
+            }
+            UiObject child = mNodes[top].child(mNextChild[top]++);
+            if (child == null)
+                continue;
+            int depth = top + 1;
+            boolean included = depth >= mOptions.getMinDepth() && mFilter.isIncluded(child);
+            if (depth < mOptions.getMaxDepth()) {
+                push(child, included);
+            } else if (!included) {
+                child.recycle();
+            }
+            if (included) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private UiObject nextCandidate() {
+        while (mNextCandidate < mCandidates.size()) {
+            UiObject candidate = mCandidates.get(mNextCandidate++);
+            if (mFilter.isIncluded(candidate)) {
+                return candidate;
+            }
+            candidate.recycle();
+        }
+        return null;
+    }
+
+    /**
+     * 节点还在栈中(子树还没遍历完)时改为出栈时回收，否则立即回收。
+     */
+    @Override
+    public void release(UiObject node) {
+        if (node == mStart)
+            return;
+        for (int i = mTop; i >= 0; i--) {
+            if (mNodes[i] == node) {
+                mRetained[i] = false;
+                return;
+            }
+        }
+        node.recycle();
+    }
+
+    @Override
+    public void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+        if (mCandidates != null) {
+            for (int i = mNextCandidate; i < mCandidates.size(); i++) {
+                mCandidates.get(i).recycle();
+            }
+            mCandidates = null;
+        }
+        while (mTop >= 0) {
+            pop();
+        }
+        mRoot = null;
+    }
+
+    private void push(UiObject node, boolean retained) {
+        mTop++;
+        if (mTop == mNodes.length) {
+            int capacity = mTop * 2;
+            mNodes = Arrays.copyOf(mNodes, capacity);
+            mNextChild = Arrays.copyOf(mNextChild, capacity);
+            mChildCount = Arrays.copyOf(mChildCount, capacity);
+            mRetained = Arrays.copyOf(mRetained, capacity);
+        }
+        mNodes[mTop] = node;
+        mNextChild[mTop] = 0;
+        mChildCount[mTop] = node.getChildCount();
+        mRetained[mTop] = retained;
+    }
+
+    private void pop() {
+        if (!mRetained[mTop]) {
+            mNodes[mTop].recycle();
+        }
+        mNodes[mTop] = null;
+        mTop--;
+    }
+}
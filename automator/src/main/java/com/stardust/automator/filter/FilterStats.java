@@ -0,0 +1,139 @@
+package com.stardust.automator.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Stardust on 2017/6/4.
+ * <p>
+ * 每种筛选条件(例如textMatches, clickable)在运行时的统计：抽样判断的次数、通过的次数和耗时。
+ * 统计按条件种类而不是按选择器记录，因此脚本每次新建的选择器也能使用之前的统计结果。
+ * AndFilter根据它估计每个条件的开销和选择性，决定判断的顺序。
+ */
+
+public class FilterStats {
+
+    // 没有足够样本时，用getCost()对应的默认耗时和0.5的通过率作为先验，权重相当于PRIOR_WEIGHT个样本
+    private static final int PRIOR_WEIGHT = 8;
+    private static final long[] PRIOR_NANOS = {100, 1000, 10000};
+
+    private static final Map<String, FilterStats> STATS = new HashMap<>();
+
+    private static final Comparator<FilterStats> KEY_COMPARATOR = new Comparator<FilterStats>() {
+        @Override
+        public int compare(FilterStats o1, FilterStats o2) {
+            return o1.mKey.compareTo(o2.mKey);
+        }
+    };
+
+    public static FilterStats of(String key) {
+        synchronized (STATS) {
+            FilterStats stats = STATS.get(key);
+            if (stats == null) {
+                stats = new FilterStats(key);
+                STATS.put(key, stats);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * 返回所有条件的统计，按名称排序。
+     */
+    public static List<FilterStats> getAll() {
+        List<FilterStats> all;
+        synchronized (STATS) {
+            all = new ArrayList<>(STATS.values());
+        }
+        Collections.sort(all, KEY_COMPARATOR);
+        return all;
+    }
+
+    /**
+     * 清零所有条件的统计。已有的AndFilter仍持有这些统计对象，因此只能原地清零，不能从表中移除。
+     */
+    public static void resetAll() {
+        List<FilterStats> all;
+        synchronized (STATS) {
+            all = new ArrayList<>(STATS.values());
+        }
+        for (FilterStats stats : all) {
+            stats.reset();
+        }
+    }
+
+    private final String mKey;
+    private long mSamples;
+    private long mPassed;
+    private long mNanos;
+
+    private FilterStats(String key) {
+        mKey = key;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public synchronized void record(long nanos, boolean passed) {
+        mSamples++;
+        mNanos += nanos;
+        if (passed) {
+            mPassed++;
+        }
+    }
+
+    public synchronized void reset() {
+        mSamples = 0;
+        mPassed = 0;
+        mNanos = 0;
+    }
+
+    public synchronized long getSamples() {
+        return mSamples;
+    }
+
+    public synchronized long getPassed() {
+        return mPassed;
+    }
+
+    /**
+     * 通过率，没有样本时为NaN
+     */
+    public synchronized double getSelectivity() {
+        return mSamples == 0 ? Double.NaN : (double) mPassed / mSamples;
+    }
+
+    /**
+     * 每次判断的平均耗时(纳秒)，没有样本时为NaN
+     */
+    public synchronized double getAverageNanos() {
+        return mSamples == 0 ? Double.NaN : (double) mNanos / mSamples;
+    }
+
+    /**
+     * 返回条件在合取中的排序依据：估计耗时 / 估计淘汰率。按此值从小到大判断可以使每个节点的期望耗时最小。
+     *
+     * @param cost 条件的{@link DfsFilter#getCost()}，用于确定先验耗时
+     */
+    synchronized double rank(int cost) {
+        long priorNanos = PRIOR_NANOS[Math.max(0, Math.min(PRIOR_NANOS.length - 1, cost))];
+        double nanos = (mNanos + (double) priorNanos * PRIOR_WEIGHT) / (mSamples + PRIOR_WEIGHT);
+        double selectivity = (mPassed + 0.5 * PRIOR_WEIGHT) / (mSamples + PRIOR_WEIGHT);
+        return nanos / Math.max(1 - selectivity, 1e-3);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FilterStats{" +
+                "mKey='" + mKey + '\'' +
+                ", mSamples=" + mSamples +
+                ", mPassed=" + mPassed +
+                ", mAverageNanos=" + (mSamples == 0 ? 0 : mNanos / mSamples) +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/5/29.
+ * <p>
+ * 多个布尔属性条件合并后的筛选条件：mask中各位(UiSnapshot.FLAG_*)的值需要与expected相同，每个节点只需一次位运算。
+ */
+
+public class FlagsFilter extends DfsFilter {
+
+    /**
+     * 把filters中对应标志位的BooleanFilter合并为一个FlagsFilter并放在最前面，其他条件保持原有顺序。
+     * 只有一个这样的条件时原样返回。
+     */
+    public static List<DfsFilter> fold(List<DfsFilter> filters) {
+        int mask = 0;
+        int expected = 0;
+        boolean satisfiable = true;
+        int count = 0;
+        List<DfsFilter> others = new ArrayList<>(filters.size());
+        for (DfsFilter filter : filters) {
+            int flag = filter instanceof BooleanFilter ? ((BooleanFilter) filter).getFlag() : 0;
+            if (flag == 0) {
+                others.add(filter);
+                continue;
+            }
+            boolean value = ((BooleanFilter) filter).getExpectedValue();
+            if ((mask & flag) != 0 && ((expected & flag) != 0) != value) {
+                // 同一属性既要求true又要求false
+                satisfiable = false;
+            }
+            mask |= flag;
+            if (value) {
+                expected |= flag;
+            }
+            count++;
+        }
+        if (count < 2) {
+            return filters;
+        }
+        others.add(0, new FlagsFilter(mask, expected, satisfiable));
+        return others;
+    }
+
+    private final int mMask;
+    private final int mExpected;
+    private final boolean mSatisfiable;
+
+    public FlagsFilter(int mask, int expected) {
+        this(mask, expected & mask, true);
+    }
+
+    private FlagsFilter(int mask, int expected, boolean satisfiable) {
+        mMask = mask;
+        mExpected = expected;
+        mSatisfiable = satisfiable;
+    }
+
+    @Override
+    protected boolean isIncluded(UiObject nodeInfo) {
+        return mSatisfiable && nodeInfo.getFlags(mMask) == mExpected;
+    }
+
+    @Override
+    protected int getCost() {
+        return COST_LOW;
+    }
+
+    /**
+     * 不同的标志组合通过率不同，按mask和expected分开统计，例如"flags(0x80=0x80)"
+     */
+    @Override
+    public String getStatsKey() {
+        String key = "flags(0x" + Integer.toHexString(mMask) + "=0x" + Integer.toHexString(mExpected) + ")";
+        return mSatisfiable ? key : key + "(unsatisfiable)";
+    }
+
+    public int getMask() {
+        return mMask;
+    }
+
+    public int getExpected() {
+        return mExpected;
+    }
+
+    @Override
+    public String toString() {
+        return "FlagsFilter{" +
+                "mMask=" + Integer.toBinaryString(mMask) +
+                ", mExpected=" + Integer.toBinaryString(mExpected) +
+                ", mSatisfiable=" + mSatisfiable +
+                '}';
+    }
+}
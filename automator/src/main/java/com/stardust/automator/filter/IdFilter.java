@@ -1,14 +1,13 @@
 package com.stardust.automator.filter;
 
 import com.stardust.automator.UiObject;
-
-import java.util.List;
+import com.stardust.util.Supplier;
 
 /**
  * Created by Stardust on 2017/3/9.
  */
 
-public class IdFilter extends ListFilter.Default {
+public class IdFilter {
 
     private static final KeyGetter ID_GETTER = new KeyGetter() {
 
@@ -18,8 +17,18 @@ public class IdFilter extends ListFilter.Default {
         }
     };
 
-    public static IdFilter equals(String id) {
-        return new IdFilter(id);
+    public static ListFilter equals(String id) {
+        return new StringEqualsFilter(id, ID_GETTER).setNativeQuery(NativeQuery.byViewId(id));
+    }
+
+    /**
+     * id不含包名时由packageSupplier提供当前应用的包名。
+     */
+    public static ListFilter equals(String id, Supplier<String> packageSupplier) {
+        if (id.contains(":")) {
+            return equals(id);
+        }
+        return new ShortIdFilter(id, packageSupplier);
     }
 
     public static StringStartsWithFilter startsWith(String prefix) {
@@ -38,16 +47,8 @@ public class IdFilter extends ListFilter.Default {
         return new StringMatchesFilter(regex, ID_GETTER);
     }
 
-    private String mId;
+    private IdFilter() {
 
-    private IdFilter(String id) {
-        mId = id;
     }
 
-    @Override
-    public List<UiObject> filter(UiObject node) {
-        return node.findByViewId(mId);
-    }
-
-
 }
@@ -0,0 +1,145 @@
+package com.stardust.automator.filter;
+
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+
+import com.stardust.automator.BoundsIndex;
+import com.stardust.automator.UiObject;
+
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/5/22.
+ * <p>
+ * 在目标应用进程内完成的查找(findAccessibilityNodeInfosByViewId/ByText)，用于在遍历控件树之前预先筛选出候选节点。
+ * 按边界的查找只有快照能回答(使用快照的空间索引)，在真实节点上回答不了时交给fallback或遍历。
+ */
+
+public class NativeQuery {
+
+    public static final int TYPE_VIEW_ID = 0;
+    public static final int TYPE_TEXT = 1;
+    public static final int TYPE_BOUNDS = 2;
+
+    /**
+     * findAccessibilityNodeInfosByText会找出文本或描述中包含(忽略大小写)该字符串的所有节点。
+     */
+    @Nullable
+    public static NativeQuery byText(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        return new NativeQuery(TYPE_TEXT, text);
+    }
+
+    @Nullable
+    public static NativeQuery byViewId(String fullId) {
+        if (fullId == null || !fullId.contains(":id/")) {
+            return null;
+        }
+        return new NativeQuery(TYPE_VIEW_ID, fullId);
+    }
+
+    /**
+     * @param type BoundsIndex.TYPE_*
+     */
+    public static NativeQuery byBounds(Rect bounds, int type) {
+        return new NativeQuery(TYPE_BOUNDS, null, bounds, type, null);
+    }
+
+    private final int mType;
+    private final String mKey;
+    private final Rect mBounds;
+    private final int mBoundsType;
+    private final NativeQuery mFallback;
+
+    private NativeQuery(int type, String key) {
+        this(type, key, null, 0, null);
+    }
+
+    private NativeQuery(int type, String key, Rect bounds, int boundsType, NativeQuery fallback) {
+        mType = type;
+        mKey = key;
+        mBounds = bounds;
+        mBoundsType = boundsType;
+        mFallback = fallback;
+    }
+
+    /**
+     * 返回一个先尝试本查找，在root上回答不了时再使用fallback的查找。
+     */
+    public NativeQuery orElse(@Nullable NativeQuery fallback) {
+        if (fallback == null) {
+            return this;
+        }
+        return new NativeQuery(mType, mKey, mBounds, mBoundsType, fallback);
+    }
+
+    /**
+     * 返回候选节点，root回答不了该查找时返回null。
+     * <p>
+     * 按文本查找只在结果完整时({@link UiObject#isTextLookupComplete()}，即快照中的节点)使用：
+     * 真实节点上通过AccessibilityNodeProvider提供的虚拟节点等不一定能被查找到，即使找到了一部分节点，
+     * 也不能说明树中没有其他符合条件的节点，这时返回null，由调用者遍历。
+     */
+    @Nullable
+    public List<UiObject> query(UiObject root) {
+        List<UiObject> result;
+        if (mType == TYPE_VIEW_ID) {
+            result = root.findByViewId(mKey);
+        } else if (mType == TYPE_TEXT) {
+            result = root.isTextLookupComplete() ? root.findByText(mKey) : null;
+        } else {
+            result = root.findByBounds(mBounds, mBoundsType);
+        }
+        if (result == null && mFallback != null) {
+            return mFallback.query(root);
+        }
+        return result;
+    }
+
+    /**
+     * id通常是唯一的，优先于文本；文本越长，匹配到的节点一般越少。边界相等优先于其他边界关系。
+     * 边界查找与其他查找不可比较，由调用者分别选择。
+     */
+    public boolean isMoreSelectiveThan(@Nullable NativeQuery other) {
+        if (other == null) {
+            return true;
+        }
+        if (mType != other.mType) {
+            return mType == TYPE_VIEW_ID;
+        }
+        if (mType == TYPE_BOUNDS) {
+            return mBoundsType == BoundsIndex.TYPE_EQUALS && other.mBoundsType != BoundsIndex.TYPE_EQUALS;
+        }
+        return mKey.length() > other.mKey.length();
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public Rect getBounds() {
+        return mBounds;
+    }
+
+    @Nullable
+    public NativeQuery getFallback() {
+        return mFallback;
+    }
+
+    @Override
+    public String toString() {
+        return "NativeQuery{" +
+                "mType=" + mType +
+                ", mKey='" + mKey + '\'' +
+                ", mBounds=" + mBounds +
+                ", mBoundsType=" + mBoundsType +
+                ", mFallback=" + mFallback +
+                '}';
+    }
+}
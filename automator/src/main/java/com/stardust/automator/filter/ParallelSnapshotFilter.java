@@ -0,0 +1,167 @@
+package com.stardust.automator.filter;
+
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import com.stardust.automator.UiObject;
+import com.stardust.automator.UiSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Stardust on 2017/5/30.
+ * <p>
+ * 在快照上并行地判断筛选条件。快照的节点按先序编号，把编号区间切分给ForkJoinPool中的线程，
+ * 各段的结果按编号顺序拼接，因此仍是文档顺序。筛选条件在多个线程中同时被调用，需要是线程安全的。
+ * <p>
+ * 有数量限制时，最左边的区间(结果的前缀)一旦找到足够的节点就记下截止编号，右边还没开始的区间不再执行，
+ * 正在执行的区间在越过截止编号时停止。
+ */
+
+public class ParallelSnapshotFilter {
+
+    // 节点数少于此值的区间不再切分
+    private static final int THRESHOLD = 256;
+    private static final int[] EMPTY = new int[0];
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private static class PoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public static List<UiObject> filter(DfsFilter filter, UiSnapshot snapshot, int root, SearchOptions options) {
+        return filter(filter, snapshot, root, options, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 在以root为根的子树中筛选最多limit个节点，深度按options限制(root深度为0)。不支持广度优先顺序。ForkJoinPool从Android 5.0开始提供。
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    public static List<UiObject> filter(DfsFilter filter, UiSnapshot snapshot, int root, SearchOptions options, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        int from = root;
+        int to = root + snapshot.subtreeSize(root);
+        Search search = new Search(filter, snapshot, snapshot.depth(root), options, from, limit);
+        int[] found = PoolHolder.POOL.invoke(new FilterTask(search, from, to));
+        List<UiObject> list = new ArrayList<>(found.length);
+        for (int i : found) {
+            list.add(snapshot.getObject(i));
+        }
+        return list;
+    }
+
+    /**
+     * 一次筛选中各个区间共享的参数和截止编号
+     */
+    private static class Search {
+
+        final DfsFilter filter;
+        final UiSnapshot snapshot;
+        final int baseDepth;
+        final SearchOptions options;
+        final int start;
+        final int limit;
+        // 编号不小于此值的节点不会出现在结果中
+        final AtomicInteger cutoff = new AtomicInteger(Integer.MAX_VALUE);
+
+        Search(DfsFilter filter, UiSnapshot snapshot, int baseDepth, SearchOptions options, int start, int limit) {
+            this.filter = filter;
+            this.snapshot = snapshot;
+            this.baseDepth = baseDepth;
+            this.options = options;
+            this.start = start;
+            this.limit = limit;
+        }
+
+        /**
+         * 从start开始的前缀区间的结果已经足够时，记下截止编号并截断结果
+         */
+        int[] onPrefixResult(int from, int[] result) {
+            if (from != start || result.length < limit) {
+                return result;
+            }
+            int end = result[limit - 1] + 1;
+            int cutoff;
+            while (end < (cutoff = this.cutoff.get())) {
+                if (this.cutoff.compareAndSet(cutoff, end))
+                    break;
+            }
+            return result.length == limit ? result : Arrays.copyOf(result, limit);
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private static class FilterTask extends RecursiveTask<int[]> {
+
+        private final Search mSearch;
+        private final int mFrom;
+        private final int mTo;
+
+        FilterTask(Search search, int from, int to) {
+            mSearch = search;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (mFrom >= mSearch.cutoff.get()) {
+                return EMPTY;
+            }
+            if (mTo - mFrom <= THRESHOLD) {
+                return mSearch.onPrefixResult(mFrom, computeDirectly());
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            FilterTask left = new FilterTask(mSearch, mFrom, mid);
+            FilterTask right = new FilterTask(mSearch, mid, mTo);
+            right.fork();
+            int[] leftResult = mSearch.onPrefixResult(mFrom, left.compute());
+            int[] rightResult;
+            if (leftResult.length >= mSearch.limit && right.tryUnfork()) {
+                rightResult = EMPTY;
+            } else {
+                rightResult = right.join();
+            }
+            if (rightResult.length == 0)
+                return leftResult;
+            if (leftResult.length == 0)
+                return mSearch.onPrefixResult(mFrom, rightResult);
+            int size = (int) Math.min((long) leftResult.length + rightResult.length, mSearch.limit);
+            int[] result = Arrays.copyOf(leftResult, size);
+            System.arraycopy(rightResult, 0, result, leftResult.length, size - leftResult.length);
+            return mSearch.onPrefixResult(mFrom, result);
+        }
+
+        private int[] computeDirectly() {
+            DfsFilter filter = mSearch.filter;
+            UiSnapshot snapshot = mSearch.snapshot;
+            SearchOptions options = mSearch.options;
+            int[] result = null;
+            int size = 0;
+            for (int i = mFrom; i < mTo && size < mSearch.limit; i++) {
+                if (i >= mSearch.cutoff.get())
+                    break;
+                int depth = snapshot.depth(i) - mSearch.baseDepth;
+                if (depth < options.getMinDepth() || depth > options.getMaxDepth())
+                    continue;
+                if (!filter.isIncluded(snapshot.getObject(i)))
+                    continue;
+                if (result == null) {
+                    result = new int[Math.min(16, mTo - mFrom)];
+                } else if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = i;
+            }
+            return result == null ? EMPTY : Arrays.copyOf(result, size);
+        }
+    }
+}
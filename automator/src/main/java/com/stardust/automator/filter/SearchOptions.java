@@ -0,0 +1,70 @@
+package com.stardust.automator.filter;
+
+/**
+ * Created by Stardust on 2017/5/27.
+ * <p>
+ * 控件树的遍历方式。深度以查找的起点为0，超过最大深度的子树不会被访问；广度优先时结果按层次顺序排列。
+ */
+
+public class SearchOptions {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    public static final SearchOptions DEFAULT = new SearchOptions(0, UNLIMITED, false);
+
+    private final int mMinDepth;
+    private final int mMaxDepth;
+    private final boolean mBreadthFirst;
+
+    private SearchOptions(int minDepth, int maxDepth, boolean breadthFirst) {
+        mMinDepth = minDepth;
+        mMaxDepth = maxDepth;
+        mBreadthFirst = breadthFirst;
+    }
+
+    public SearchOptions withMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth = " + maxDepth);
+        }
+        return new SearchOptions(mMinDepth, maxDepth, mBreadthFirst);
+    }
+
+    public SearchOptions withDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth = " + depth);
+        }
+        return new SearchOptions(depth, depth, mBreadthFirst);
+    }
+
+    public SearchOptions withBreadthFirst(boolean breadthFirst) {
+        return new SearchOptions(mMinDepth, mMaxDepth, breadthFirst);
+    }
+
+    public int getMinDepth() {
+        return mMinDepth;
+    }
+
+    public int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    public boolean isBreadthFirst() {
+        return mBreadthFirst;
+    }
+
+    /**
+     * 是否没有任何限制。有深度限制或广度优先时，NativeQuery的结果无法保证深度与顺序，筛选会改为遍历控件树。
+     */
+    public boolean isDefault() {
+        return mMinDepth == 0 && mMaxDepth == UNLIMITED && !mBreadthFirst;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOptions{" +
+                "mMinDepth=" + mMinDepth +
+                ", mMaxDepth=" + mMaxDepth +
+                ", mBreadthFirst=" + mBreadthFirst +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+package com.stardust.automator.filter;
+
+import android.support.annotation.Nullable;
+
+import com.stardust.automator.UiObject;
+import com.stardust.util.Supplier;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ * <p>
+ * 不含包名的id，例如"ok"，用当前应用的包名补全为"com.example:id/ok"后匹配。完整id只在包名变化时重新拼接，
+ * 判断节点时不产生新的字符串；包名已知时可以交给findAccessibilityNodeInfosByViewId查找。
+ */
+
+public class ShortIdFilter extends DfsFilter {
+
+    private static class Resolved {
+
+        final String packageName;
+        final String fullId;
+        final NativeQuery nativeQuery;
+
+        Resolved(String packageName, String id) {
+            this.packageName = packageName;
+            fullId = packageName + ":id/" + id;
+            nativeQuery = packageName.isEmpty() ? null : NativeQuery.byViewId(fullId);
+        }
+    }
+
+    private final String mId;
+    private final Supplier<String> mPackageSupplier;
+    private volatile Resolved mResolved;
+
+    public ShortIdFilter(String id, Supplier<String> packageSupplier) {
+        mId = id;
+        mPackageSupplier = packageSupplier;
+    }
+
+    private Resolved resolve() {
+        String packageName = mPackageSupplier.get();
+        if (packageName == null) {
+            packageName = "";
+        }
+        Resolved resolved = mResolved;
+        if (resolved == null || !resolved.packageName.equals(packageName)) {
+            resolved = new Resolved(packageName, mId);
+            mResolved = resolved;
+        }
+        return resolved;
+    }
+
+    @Override
+    protected boolean isIncluded(UiObject nodeInfo) {
+        return resolve().fullId.equals(nodeInfo.getViewIdResourceName());
+    }
+
+    /**
+     * 每次查找开始时按当前包名返回，包名未知时返回null。
+     */
+    @Nullable
+    @Override
+    public NativeQuery getNativeQuery() {
+        return resolve().nativeQuery;
+    }
+
+    public String getId() {
+        return mId;
+    }
+}
@@ -8,18 +8,27 @@ import com.stardust.automator.UiObject;
 
 public class StringMatchesFilter extends DfsFilter {
 
-    private final String mRegex;
+    private final CompiledRegex mRegex;
     private final KeyGetter mKeyGetter;
 
     StringMatchesFilter(String regex, KeyGetter keyGetter) {
-        mRegex = regex;
+        mRegex = CompiledRegex.compile(regex);
         mKeyGetter = keyGetter;
     }
 
     @Override
     protected boolean isIncluded(UiObject nodeInfo) {
         String key = mKeyGetter.getKey(nodeInfo);
-        return key != null && key.matches(mRegex);
+        return key != null && mRegex.matches(key);
+    }
+
+    @Override
+    protected int getCost() {
+        return mRegex.isLiteral() ? COST_NORMAL : COST_HIGH;
+    }
+
+    CompiledRegex getRegex() {
+        return mRegex;
     }
 
 }
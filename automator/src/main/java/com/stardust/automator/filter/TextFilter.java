@@ -2,13 +2,11 @@ package com.stardust.automator.filter;
 
 import com.stardust.automator.UiObject;
 
-import java.util.List;
-
 /**
  * Created by Stardust on 2017/3/9.
  */
 
-public class TextFilter extends ListFilter.Default {
+public class TextFilter {
 
     private static final KeyGetter TEXT_GETTER = new KeyGetter() {
         @Override
@@ -19,34 +17,49 @@ public class TextFilter extends ListFilter.Default {
     };
 
     public static ListFilter equals(String text) {
-        return new StringEqualsFilter(text, TEXT_GETTER);
+        return new StringEqualsFilter(text, TEXT_GETTER).setNativeQuery(NativeQuery.byText(text));
     }
 
+    /**
+     * 与findAccessibilityNodeInfosByText相同，文本或描述中包含str(忽略大小写)的节点都符合条件。
+     */
     public static ListFilter contains(String str) {
-        return new TextFilter(str);
+        return new TextOrDescContainsFilter(str).setNativeQuery(NativeQuery.byText(str));
     }
 
     public static ListFilter startsWith(String prefix) {
-        return new StringStartsWithFilter(prefix, TEXT_GETTER);
+        return new StringStartsWithFilter(prefix, TEXT_GETTER).setNativeQuery(NativeQuery.byText(prefix));
     }
 
     public static ListFilter endsWith(String suffix) {
-        return new StringEndsWithFilter(suffix, TEXT_GETTER);
+        return new StringEndsWithFilter(suffix, TEXT_GETTER).setNativeQuery(NativeQuery.byText(suffix));
     }
 
     public static ListFilter matches(String regex) {
-        return new StringMatchesFilter(regex, TEXT_GETTER);
+        StringMatchesFilter filter = new StringMatchesFilter(regex, TEXT_GETTER);
+        filter.setNativeQuery(NativeQuery.byText(filter.getRegex().getLiteral()));
+        return filter;
     }
 
-    private String mText;
+    private static class TextOrDescContainsFilter extends DfsFilter {
+
+        private final String mContains;
+
+        TextOrDescContainsFilter(String contains) {
+            mContains = contains.toLowerCase();
+        }
+
+        @Override
+        protected boolean isIncluded(UiObject nodeInfo) {
+            return containsIgnoreCase(nodeInfo.getText()) || containsIgnoreCase(nodeInfo.getContentDescription());
+        }
 
-    private TextFilter(String text) {
-        mText = text;
+        private boolean containsIgnoreCase(CharSequence charSequence) {
+            return charSequence != null && charSequence.toString().toLowerCase().contains(mContains);
+        }
     }
 
+    private TextFilter() {
 
-    @Override
-    public List<UiObject> filter(UiObject node) {
-        return node.findByText(mText);
     }
 }
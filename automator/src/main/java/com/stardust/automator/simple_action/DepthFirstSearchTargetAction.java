@@ -1,6 +1,7 @@
 package com.stardust.automator.simple_action;
 
 import com.stardust.automator.UiObject;
+import com.stardust.automator.UiTreeWalker;
 
 /**
  * Created by Stardust on 2017/1/27.
@@ -19,19 +20,17 @@ public class DepthFirstSearchTargetAction extends SearchTargetAction {
 
     @Override
     public UiObject searchTarget(UiObject n) {
-        if (n == null)
-            return null;
-        if (mAble.isAble(n))
-            return n;
-        for (int i = 0; i < n.getChildCount(); i++) {
-            UiObject child = n.child(i);
-            if (child == null)
-                continue;
-            UiObject node = searchTarget(child);
-            if (node != null)
-                return node;
-        }
-        return null;
+        final UiObject[] target = new UiObject[1];
+        UiTreeWalker.walk(n, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                if (!mAble.isAble(node))
+                    return UiTreeWalker.CONTINUE;
+                target[0] = node;
+                return UiTreeWalker.STOP | UiTreeWalker.RETAIN;
+            }
+        });
+        return target[0];
     }
 
 
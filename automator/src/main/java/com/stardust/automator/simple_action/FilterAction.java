@@ -2,10 +2,12 @@ package com.stardust.automator.simple_action;
 
 import android.graphics.Rect;
 
+import com.stardust.automator.BoundsIndex;
 import com.stardust.automator.UiObject;
+import com.stardust.automator.UiTreeWalker;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -59,26 +61,28 @@ public abstract class FilterAction extends SimpleAction {
 
         @Override
         public List<UiObject> filter(UiObject root) {
+            // 快照的根节点可以直接使用空间索引
+            List<UiObject> found = root.findByBounds(mBoundsInScreen, BoundsIndex.TYPE_EQUALS);
+            if (found != null) {
+                return found.isEmpty() ? found : Collections.singletonList(found.get(0));
+            }
             return Collections.singletonList(findAccessibilityNodeInfosByBounds(root));
         }
 
         private UiObject findAccessibilityNodeInfosByBounds(UiObject root) {
-            if (root == null)
-                return null;
-            Rect rect = new Rect();
-            root.getBoundsInScreen(rect);
-            if (rect.equals(mBoundsInScreen)) {
-                return root;
-            }
-            for (int i = 0; i < root.getChildCount(); i++) {
-                UiObject child = root.child(i);
-                if (child == null)
-                    continue;
-                UiObject nodeInfo = findAccessibilityNodeInfosByBounds(child);
-                if (nodeInfo != null)
-                    return nodeInfo;
-            }
-            return null;
+            final Rect rect = new Rect();
+            final UiObject[] found = new UiObject[1];
+            UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+                @Override
+                public int visit(UiObject node, int depth) {
+                    node.getBoundsInScreen(rect);
+                    if (!rect.equals(mBoundsInScreen))
+                        return UiTreeWalker.CONTINUE;
+                    found[0] = node;
+                    return UiTreeWalker.STOP | UiTreeWalker.RETAIN;
+                }
+            });
+            return found[0];
         }
 
         @Override
@@ -108,16 +112,16 @@ public abstract class FilterAction extends SimpleAction {
         }
 
         public static List<UiObject> findEditable(UiObject root) {
-            if (root == null) {
-                return Collections.emptyList();
-            }
-            if (root.isEditable()) {
-                return Collections.singletonList(root);
-            }
-            List<UiObject> list = new LinkedList<>();
-            for (int i = 0; i < root.getChildCount(); i++) {
-                list.addAll(findEditable(root.child(i)));
-            }
+            final List<UiObject> list = new ArrayList<>();
+            UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+                @Override
+                public int visit(UiObject node, int depth) {
+                    if (!node.isEditable())
+                        return UiTreeWalker.CONTINUE;
+                    list.add(node);
+                    return UiTreeWalker.SKIP_CHILDREN | UiTreeWalker.RETAIN;
+                }
+            });
             return list;
         }
 
@@ -1,12 +1,12 @@
 package com.stardust.automator.simple_action;
 
 import android.graphics.Rect;
-import android.util.Log;
 
 import com.stardust.automator.UiObject;
+import com.stardust.automator.UiTreeWalker;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Stardust on 2017/1/27.
@@ -17,8 +17,11 @@ public class ScrollMaxAction extends SimpleAction {
     private static final String TAG = ScrollMaxAction.class.getSimpleName();
     private int mScrollAction;
     private UiObject mMaxScrollableNode;
+    private long mMaxArea;
     private UiObject mRootNode;
-    private Set<UiObject> mRecycledMaxUiObjects = new HashSet<>();
+    // 被更大的节点取代的节点。它可能仍在遍历的路径上，因此遍历结束后才回收
+    private List<UiObject> mReplacedNodes = new ArrayList<>();
+    private final Rect mBounds = new Rect();
 
     public ScrollMaxAction(int scrollAction) {
         mScrollAction = scrollAction;
@@ -39,40 +42,35 @@ public class ScrollMaxAction extends SimpleAction {
             mMaxScrollableNode.recycle();
         }
         mMaxScrollableNode = mRootNode = null;
-        mRecycledMaxUiObjects.clear();
+        mMaxArea = 0;
     }
 
-    private void findMaxScrollableNodeInfo(UiObject nodeInfo) {
-        if (nodeInfo == null)
-            return;
-        if (nodeInfo.isScrollable()) {
-            if (mMaxScrollableNode == null) {
-                mMaxScrollableNode = nodeInfo;
-            } else if (getAreaInScreen(mMaxScrollableNode) < getAreaInScreen(nodeInfo)) {
-                if (mMaxScrollableNode != mRootNode) {
-                    mRecycledMaxUiObjects.add(mMaxScrollableNode);
-                    mMaxScrollableNode.recycle();
-                }
-                mMaxScrollableNode = nodeInfo;
-            }
-        }
-        for (int i = 0; i < nodeInfo.getChildCount(); i++) {
-            UiObject child = nodeInfo.child(i);
-            if (child != null) {
-                findMaxScrollableNodeInfo(child);
-                if (mMaxScrollableNode != child && !mRecycledMaxUiObjects.contains(child)) {
-                    child.recycle();
+    private void findMaxScrollableNodeInfo(UiObject root) {
+        UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                if (!node.isScrollable())
+                    return UiTreeWalker.CONTINUE;
+                long area = getAreaInScreen(node);
+                if (mMaxScrollableNode != null && area <= mMaxArea)
+                    return UiTreeWalker.CONTINUE;
+                if (mMaxScrollableNode != null && mMaxScrollableNode != mRootNode) {
+                    mReplacedNodes.add(mMaxScrollableNode);
                 }
+                mMaxScrollableNode = node;
+                mMaxArea = area;
+                return UiTreeWalker.CONTINUE | UiTreeWalker.RETAIN;
             }
+        });
+        for (UiObject node : mReplacedNodes) {
+            node.recycle();
         }
+        mReplacedNodes.clear();
     }
 
     private long getAreaInScreen(UiObject nodeInfo) {
-        Rect rect = new Rect();
-        nodeInfo.getBoundsInScreen(rect);
-        long area = ((long) rect.width()) * rect.height();
-        Log.v(TAG, "area=" + area);
-        return area;
+        nodeInfo.getBoundsInScreen(mBounds);
+        return ((long) mBounds.width()) * mBounds.height();
     }
 
 }
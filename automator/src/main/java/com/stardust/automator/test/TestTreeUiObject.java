@@ -0,0 +1,70 @@
+package com.stardust.automator.test;
+
+import com.stardust.automator.UiObject;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ * <p>
+ * 确定的测试用控件树：高度为6的满二叉树，按堆的方式编号(根为1，节点n的子节点为2n和2n+1)。
+ * 只有第3层的节点可以滚动，没有可以点击的节点。alive记录创建后还没有回收的节点数，是静态的，使用它的测试应在@Before中清零。
+ */
+
+public class TestTreeUiObject extends UiObject {
+
+    public static final int HEIGHT = 6;
+    public static final int SCROLLABLE_DEPTH = 3;
+
+    public static int alive = 0;
+
+    private final int mDepth;
+    private final int mNumber;
+
+    public TestTreeUiObject() {
+        this(0, 1);
+    }
+
+    private TestTreeUiObject(int depth, int number) {
+        super(null);
+        mDepth = depth;
+        mNumber = number;
+        alive++;
+    }
+
+    public int getDepth() {
+        return mDepth;
+    }
+
+    public int getNumber() {
+        return mNumber;
+    }
+
+    @Override
+    public UiObject child(int i) {
+        return new TestTreeUiObject(mDepth + 1, mNumber * 2 + i);
+    }
+
+    @Override
+    public int getChildCount() {
+        return mDepth < HEIGHT ? 2 : 0;
+    }
+
+    @Override
+    public boolean isClickable() {
+        return false;
+    }
+
+    @Override
+    public boolean isScrollable() {
+        return mDepth == SCROLLABLE_DEPTH;
+    }
+
+    @Override
+    public void recycle() {
+        alive--;
+    }
+
+    @Override
+    public String toString() {
+        return "TestTreeUiObject{" + mNumber + "}";
+    }
+}
@@ -0,0 +1,216 @@
+package com.stardust.view.accessibility;
+
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Stardust on 2017/6/8.
+ * <p>
+ * 无障碍事件处理过程的统计：每种事件类型收到和分发的次数、分发的总耗时，以及每个委托处理的次数和耗时。
+ * 收到与分发次数的差为被合并的事件数。记录只使用原子操作，不加锁。
+ */
+
+public class AccessibilityMetrics {
+
+    public static class EventTypeMetrics {
+
+        private final int mEventType;
+        private final AtomicLong mReceived = new AtomicLong();
+        private final LatencyHistogram mDispatchTime = new LatencyHistogram();
+
+        EventTypeMetrics(int eventType) {
+            mEventType = eventType;
+        }
+
+        public int getEventType() {
+            return mEventType;
+        }
+
+        public long getReceivedCount() {
+            return mReceived.get();
+        }
+
+        /**
+         * 分发给所有委托的总耗时，记录次数即分发的次数
+         */
+        public LatencyHistogram getDispatchTime() {
+            return mDispatchTime;
+        }
+
+        void reset() {
+            mReceived.set(0);
+            mDispatchTime.reset();
+        }
+    }
+
+    public static class DelegateMetrics {
+
+        private final AccessibilityDelegate mDelegate;
+        private final LatencyHistogram mHandlingTime = new LatencyHistogram();
+
+        DelegateMetrics(AccessibilityDelegate delegate) {
+            mDelegate = delegate;
+        }
+
+        public AccessibilityDelegate getDelegate() {
+            return mDelegate;
+        }
+
+        public String getName() {
+            AccessibilityDelegate delegate = mDelegate instanceof AsyncAccessibilityDelegate
+                    ? ((AsyncAccessibilityDelegate) mDelegate).getDelegate() : mDelegate;
+            return delegate.getClass().getSimpleName();
+        }
+
+        /**
+         * 在分发线程中的耗时。对于异步委托只是放入队列的耗时，实际处理的耗时见{@link AsyncAccessibilityDelegate#getHandlingTime()}
+         */
+        public LatencyHistogram getHandlingTime() {
+            return mHandlingTime;
+        }
+
+        public void record(long nanos) {
+            mHandlingTime.record(nanos);
+        }
+
+        void reset() {
+            mHandlingTime.reset();
+            if (mDelegate instanceof AsyncAccessibilityDelegate) {
+                ((AsyncAccessibilityDelegate) mDelegate).getHandlingTime().reset();
+            }
+        }
+    }
+
+    private final EventTypeMetrics[] mEventTypes = new EventTypeMetrics[Integer.SIZE];
+    private final Map<AccessibilityDelegate, DelegateMetrics> mDelegates = new IdentityHashMap<>();
+    private volatile long mStartMillis = SystemClock.elapsedRealtime();
+
+    public AccessibilityMetrics() {
+        for (int i = 0; i < Integer.SIZE; i++) {
+            mEventTypes[i] = new EventTypeMetrics(1 << i);
+        }
+    }
+
+    /**
+     * 返回eventType的统计。eventType不是单独的一位时返回null
+     */
+    public EventTypeMetrics getEventTypeMetrics(int eventType) {
+        if (eventType == 0 || (eventType & (eventType - 1)) != 0) {
+            return null;
+        }
+        return mEventTypes[Integer.numberOfTrailingZeros(eventType)];
+    }
+
+    public void onEventReceived(int eventType) {
+        EventTypeMetrics metrics = getEventTypeMetrics(eventType);
+        if (metrics != null) {
+            metrics.mReceived.incrementAndGet();
+        }
+    }
+
+    public void onEventDispatched(int eventType, long nanos) {
+        EventTypeMetrics metrics = getEventTypeMetrics(eventType);
+        if (metrics != null) {
+            metrics.mDispatchTime.record(nanos);
+        }
+    }
+
+    /**
+     * 返回delegate的统计，没有时创建。应在建立分发表时调用，而不是每次分发时。
+     */
+    public DelegateMetrics getDelegateMetrics(AccessibilityDelegate delegate) {
+        synchronized (mDelegates) {
+            DelegateMetrics metrics = mDelegates.get(delegate);
+            if (metrics == null) {
+                metrics = new DelegateMetrics(delegate);
+                mDelegates.put(delegate, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    public void removeDelegateMetrics(AccessibilityDelegate delegate) {
+        synchronized (mDelegates) {
+            mDelegates.remove(delegate);
+        }
+    }
+
+    public List<DelegateMetrics> getAllDelegateMetrics() {
+        synchronized (mDelegates) {
+            return new ArrayList<>(mDelegates.values());
+        }
+    }
+
+    /**
+     * 返回收到过事件的事件类型的统计
+     */
+    public List<EventTypeMetrics> getAllEventTypeMetrics() {
+        List<EventTypeMetrics> list = new ArrayList<>();
+        for (EventTypeMetrics metrics : mEventTypes) {
+            if (metrics.getReceivedCount() > 0) {
+                list.add(metrics);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 距离开始统计(或上次重置)的毫秒数，用于计算事件频率
+     */
+    public long getElapsedMillis() {
+        return SystemClock.elapsedRealtime() - mStartMillis;
+    }
+
+    public void reset() {
+        for (EventTypeMetrics metrics : mEventTypes) {
+            metrics.reset();
+        }
+        for (DelegateMetrics metrics : getAllDelegateMetrics()) {
+            metrics.reset();
+        }
+        mStartMillis = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 返回便于阅读的统计报告，耗时单位为微秒
+     */
+    public String report() {
+        double seconds = Math.max(getElapsedMillis(), 1) / 1000.0;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.getDefault(), "%.0f s\n\n", seconds));
+        sb.append("event type: received/s, merged, dispatch p50/p99/max (us)\n");
+        for (EventTypeMetrics metrics : getAllEventTypeMetrics()) {
+            LatencyHistogram time = metrics.getDispatchTime();
+            sb.append(String.format(Locale.getDefault(), "%s: %.1f/s, %d, %s\n",
+                    AccessibilityEvent.eventTypeToString(metrics.getEventType()),
+                    metrics.getReceivedCount() / seconds,
+                    metrics.getReceivedCount() - time.getCount(),
+                    formatPercentiles(time)));
+        }
+        sb.append("\ndelegate: handled/s, p50/p99/max (us)\n");
+        for (DelegateMetrics metrics : getAllDelegateMetrics()) {
+            LatencyHistogram time = metrics.getHandlingTime();
+            sb.append(String.format(Locale.getDefault(), "%s: %.1f/s, %s\n",
+                    metrics.getName(), time.getCount() / seconds, formatPercentiles(time)));
+            if (metrics.getDelegate() instanceof AsyncAccessibilityDelegate) {
+                AsyncAccessibilityDelegate async = (AsyncAccessibilityDelegate) metrics.getDelegate();
+                sb.append(String.format(Locale.getDefault(), "  async: queue %d/%d, dropped %d, coalesced %d, worker %s\n",
+                        async.getQueueSize(), async.getCapacity(), async.getDroppedCount(), async.getCoalescedCount(),
+                        formatPercentiles(async.getHandlingTime())));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String formatPercentiles(LatencyHistogram histogram) {
+        return String.format(Locale.getDefault(), "%d/%d/%d",
+                histogram.getPercentile(50) / 1000, histogram.getPercentile(99) / 1000, histogram.getMax() / 1000);
+    }
+}
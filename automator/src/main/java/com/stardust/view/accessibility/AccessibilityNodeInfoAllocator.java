@@ -8,14 +8,19 @@ import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.stardust.automator.BuildConfig;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by Stardust on 2017/3/22.
+ * <p>
+ * 按获取顺序记录节点的分配器。{@link #openScope()}打开一个作用域，关闭时一次性回收作用域内获取的所有节点，
+ * 被{@link Scope#promote(AccessibilityNodeInfoCompat)}保留的节点除外。非线程安全。
  */
 
 public class AccessibilityNodeInfoAllocator {
@@ -24,6 +29,8 @@ public class AccessibilityNodeInfoAllocator {
 
     private static final String TAG = "AccessibilityAllocator";
     private static final boolean DEBUG = BuildConfig.DEBUG;
+    // 调试时每获取这么多个节点记录一次调用栈，用于定位没有回收的节点
+    private static final int LEAK_SAMPLE_INTERVAL = 64;
 
 
     private static final AccessibilityNodeInfoAllocator GLOBAL = new AccessibilityNodeInfoAllocator();
@@ -32,15 +39,84 @@ public class AccessibilityNodeInfoAllocator {
         return GLOBAL;
     }
 
-    private Map<AccessibilityNodeInfo, String> mAccessibilityNodeInfoList = new HashMap<>();
+    // 按获取顺序保存的节点，已经回收的位置为null
+    private ArrayList<AccessibilityNodeInfo> mNodes = new ArrayList<>();
+    private ArrayList<Scope> mScopes = new ArrayList<>();
+    private Map<AccessibilityNodeInfo, Throwable> mSampledStackTraces = DEBUG ? new IdentityHashMap<AccessibilityNodeInfo, Throwable>() : null;
+    private int mAddCount = 0;
+
+    public class Scope {
+
+        private final int mStart;
+        private Set<AccessibilityNodeInfo> mPromoted;
+        private boolean mClosed = false;
+
+        private Scope(int start) {
+            mStart = start;
+        }
+
+        /**
+         * 保留该节点，关闭作用域时不回收，交给外层作用域。
+         */
+        public void promote(AccessibilityNodeInfoCompat node) {
+            if (node == null || node.getInfo() == null)
+                return;
+            if (mPromoted == null) {
+                mPromoted = Collections.newSetFromMap(new IdentityHashMap<AccessibilityNodeInfo, Boolean>());
+            }
+            mPromoted.add((AccessibilityNodeInfo) node.getInfo());
+        }
+
+        /**
+         * 回收作用域内获取的、没有被保留的节点。作用域必须按打开的相反顺序关闭。
+         *
+         * @return 回收的节点数量
+         */
+        public int close() {
+            if (mClosed)
+                return 0;
+            if (mScopes.get(mScopes.size() - 1) != this) {
+                throw new IllegalStateException("Scopes must be closed in the reverse order of opening");
+            }
+            mClosed = true;
+            mScopes.remove(mScopes.size() - 1);
+            List<AccessibilityNodeInfo> promoted = null;
+            int recycled = 0;
+            for (int i = mNodes.size() - 1; i >= mStart; i--) {
+                AccessibilityNodeInfo nodeInfo = mNodes.remove(i);
+                if (nodeInfo == null)
+                    continue;
+                if (mPromoted != null && mPromoted.contains(nodeInfo)) {
+                    if (promoted == null) {
+                        promoted = new ArrayList<>();
+                    }
+                    promoted.add(nodeInfo);
+                } else if (recycleQuietly(nodeInfo)) {
+                    recycled++;
+                }
+            }
+            if (promoted != null) {
+                for (int i = promoted.size() - 1; i >= 0; i--) {
+                    mNodes.add(promoted.get(i));
+                }
+            }
+            return recycled;
+        }
+    }
+
+    public Scope openScope() {
+        Scope scope = new Scope(mNodes.size());
+        mScopes.add(scope);
+        return scope;
+    }
 
     public AccessibilityNodeInfo getChild(AccessibilityNodeInfo parent, int i) {
         return add(parent.getChild(i));
     }
 
     public AccessibilityNodeInfoCompat getChild(AccessibilityNodeInfoCompat parent, int i) {
-        AccessibilityNodeInfoCompat compat = parent.getChild(i);
-        add((AccessibilityNodeInfo) compat.getInfo());
+        AccessibilityNodeInfoCompat compat = plain(parent).getChild(i);
+        add(compat);
         return compat;
     }
 
@@ -50,8 +126,8 @@ public class AccessibilityNodeInfoAllocator {
 
 
     public AccessibilityNodeInfoCompat getParent(AccessibilityNodeInfoCompat n) {
-        AccessibilityNodeInfoCompat compat = n.getParent();
-        add((AccessibilityNodeInfo) compat.getInfo());
+        AccessibilityNodeInfoCompat compat = plain(n).getParent();
+        add(compat);
         return compat;
     }
 
@@ -63,7 +139,7 @@ public class AccessibilityNodeInfoAllocator {
 
 
     public List<AccessibilityNodeInfoCompat> findAccessibilityNodeInfosByText(AccessibilityNodeInfoCompat root, String text) {
-        List<AccessibilityNodeInfoCompat> list = root.findAccessibilityNodeInfosByText(text);
+        List<AccessibilityNodeInfoCompat> list = plain(root).findAccessibilityNodeInfosByText(text);
         addAll(list);
         return list;
     }
@@ -76,50 +152,102 @@ public class AccessibilityNodeInfoAllocator {
 
 
     public List<AccessibilityNodeInfoCompat> findAccessibilityNodeInfosByViewId(AccessibilityNodeInfoCompat root, String id) {
-        List<AccessibilityNodeInfoCompat> list = root.findAccessibilityNodeInfosByViewId(id);
+        List<AccessibilityNodeInfoCompat> list = plain(root).findAccessibilityNodeInfosByViewId(id);
         addAll(list);
         return list;
     }
 
+    /**
+     * UiObject会把getChild等调用转给分配器，这里需要绕过子类直接调用AccessibilityNodeInfoCompat的实现。
+     */
+    private static AccessibilityNodeInfoCompat plain(AccessibilityNodeInfoCompat nodeInfo) {
+        if (nodeInfo.getClass() == AccessibilityNodeInfoCompat.class)
+            return nodeInfo;
+        return new AccessibilityNodeInfoCompat(nodeInfo.getInfo());
+    }
+
     public void recycle(AccessibilityNodeInfo nodeInfo) {
         nodeInfo.recycle();
-        mAccessibilityNodeInfoList.remove(nodeInfo);
+        release(nodeInfo);
     }
 
     public void recycle(AccessibilityNodeInfoCompat nodeInfo) {
         recycle((AccessibilityNodeInfo) nodeInfo.getInfo());
     }
 
+    /**
+     * 不再跟踪该节点。节点通常在获取后不久被回收，因此从后往前查找，并去掉末尾已回收的位置。
+     */
+    private void release(AccessibilityNodeInfo nodeInfo) {
+        for (int i = mNodes.size() - 1; i >= 0; i--) {
+            if (mNodes.get(i) == nodeInfo) {
+                mNodes.set(i, null);
+                break;
+            }
+        }
+        int start = mScopes.isEmpty() ? 0 : mScopes.get(mScopes.size() - 1).mStart;
+        while (mNodes.size() > start && mNodes.get(mNodes.size() - 1) == null) {
+            mNodes.remove(mNodes.size() - 1);
+        }
+        if (DEBUG) {
+            mSampledStackTraces.remove(nodeInfo);
+        }
+    }
+
+    private boolean recycleQuietly(AccessibilityNodeInfo nodeInfo) {
+        if (DEBUG) {
+            mSampledStackTraces.remove(nodeInfo);
+        }
+        try {
+            nodeInfo.recycle();
+            return true;
+        } catch (IllegalStateException ignored) {
+            return false;
+        }
+    }
+
     public int recycleAll() {
         int notRecycledCount = 0;
-        int size = mAccessibilityNodeInfoList.size();
-        for (Map.Entry<AccessibilityNodeInfo, String> pair : mAccessibilityNodeInfoList.entrySet()) {
-            try {
-                pair.getKey().recycle();
+        int size = mNodes.size();
+        for (AccessibilityNodeInfo nodeInfo : mNodes) {
+            if (nodeInfo == null)
+                continue;
+            if (DEBUG) {
+                Throwable stackTrace = mSampledStackTraces.get(nodeInfo);
+                if (stackTrace != null)
+                    Log.w(TAG, "Not recycled", stackTrace);
+            }
+            if (recycleQuietly(nodeInfo)) {
                 notRecycledCount++;
-                if (DEBUG)
-                    Log.w(TAG, pair.getValue());
-            } catch (IllegalStateException ignored) {
             }
         }
+        mNodes.clear();
+        mScopes.clear();
         Log.v(TAG, "Total: " + size + " Not recycled: " + notRecycledCount);
         return notRecycledCount;
     }
 
     public AccessibilityNodeInfo add(@Nullable AccessibilityNodeInfo nodeInfo) {
-        String stackTrace = DEBUG ? Arrays.toString(Thread.currentThread().getStackTrace()) : null;
-        if (nodeInfo != null)
-            mAccessibilityNodeInfoList.put(nodeInfo, stackTrace);
+        if (nodeInfo == null)
+            return null;
+        mNodes.add(nodeInfo);
+        if (DEBUG && ++mAddCount % LEAK_SAMPLE_INTERVAL == 0) {
+            mSampledStackTraces.put(nodeInfo, new Throwable("Obtained here"));
+        }
         return nodeInfo;
     }
 
+    private void add(@Nullable AccessibilityNodeInfoCompat nodeInfo) {
+        if (nodeInfo != null)
+            add((AccessibilityNodeInfo) nodeInfo.getInfo());
+    }
+
     private void addAll(Collection<?> nodeInfos) {
-        String stackTrace = DEBUG ? Arrays.toString(Thread.currentThread().getStackTrace()) : null;
         for (Object nodeInfo : nodeInfos) {
             if (nodeInfo instanceof AccessibilityNodeInfo) {
-                mAccessibilityNodeInfoList.put((AccessibilityNodeInfo) nodeInfo, stackTrace);
+                add((AccessibilityNodeInfo) nodeInfo);
             } else if (nodeInfo instanceof AccessibilityNodeInfoCompat) {
-                mAccessibilityNodeInfoList.put((AccessibilityNodeInfo) ((AccessibilityNodeInfoCompat) nodeInfo).getInfo(), stackTrace);
+                add((AccessibilityNodeInfoCompat) nodeInfo);
             }
         }
     }
@@ -137,7 +265,7 @@ public class AccessibilityNodeInfoAllocator {
 
         @Override
         public AccessibilityNodeInfoCompat getParent(AccessibilityNodeInfoCompat n) {
-            return n.getParent();
+            return plain(n).getParent();
         }
 
         @Override
@@ -147,7 +275,7 @@ public class AccessibilityNodeInfoAllocator {
 
         @Override
         public AccessibilityNodeInfoCompat getChild(AccessibilityNodeInfoCompat parent, int i) {
-            return parent.getChild(i);
+            return plain(parent).getChild(i);
         }
 
         @Override
@@ -157,7 +285,7 @@ public class AccessibilityNodeInfoAllocator {
 
         @Override
         public List<AccessibilityNodeInfoCompat> findAccessibilityNodeInfosByViewId(AccessibilityNodeInfoCompat root, String id) {
-            return root.findAccessibilityNodeInfosByViewId(id);
+            return plain(root).findAccessibilityNodeInfosByViewId(id);
         }
 
 
@@ -173,7 +301,7 @@ public class AccessibilityNodeInfoAllocator {
 
         @Override
         public List<AccessibilityNodeInfoCompat> findAccessibilityNodeInfosByText(AccessibilityNodeInfoCompat root, String text) {
-            return root.findAccessibilityNodeInfosByText(text);
+            return plain(root).findAccessibilityNodeInfosByText(text);
         }
 
         @Override
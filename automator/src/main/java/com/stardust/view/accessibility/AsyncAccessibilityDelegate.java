@@ -0,0 +1,306 @@
+package com.stardust.view.accessibility;
+
+import android.accessibilityservice.AccessibilityService;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Set;
+
+/**
+ * Created by Stardust on 2017/6/6.
+ * <p>
+ * 在单独的线程中执行委托，使慢的委托不会拖慢无障碍服务的主线程和其他委托。事件被复制后放入有界的环形队列，
+ * 由该委托自己的工作线程依次处理；队列满时按溢出策略处理：
+ * <ul>
+ * <li>{@link #POLICY_DROP_OLDEST} 丢弃最早的事件</li>
+ * <li>{@link #POLICY_COALESCE_BY_TYPE} 丢弃队列中最近一个同类型的事件，新事件排到队尾；没有同类型的事件时丢弃最早的事件</li>
+ * <li>{@link #POLICY_BLOCK} 阻塞分发事件的线程直到队列有空位，不丢弃事件。委托落后时会重新拖慢所有委托，只在不能丢失事件时使用</li>
+ * </ul>
+ * 构造时可以指定可丢弃的事件类型，只有这些类型的事件会被合并或丢弃，其他事件(例如录制时的点击)总会交给委托：
+ * 腾出位置时跳过不可丢弃的事件；队列中全是不可丢弃的事件时，新事件可丢弃则丢弃新事件，否则像{@link #POLICY_BLOCK}一样等待。
+ * 异步委托的返回值不能阻止事件传给后面的委托，onAccessibilityEvent总是返回false。
+ */
+
+public class AsyncAccessibilityDelegate implements AccessibilityDelegate {
+
+    private static final String TAG = "AsyncDelegate";
+
+    public static final int POLICY_DROP_OLDEST = 0;
+    public static final int POLICY_COALESCE_BY_TYPE = 1;
+    public static final int POLICY_BLOCK = 2;
+
+    private final AccessibilityDelegate mDelegate;
+    private final int mPolicy;
+    @Nullable
+    private final Set<Integer> mDroppableEventTypes;
+    private final Object mLock = new Object();
+    private final AccessibilityEvent[] mQueue;
+    private int mHead = 0;
+    private int mSize = 0;
+    private AccessibilityService mService;
+    private Thread mWorker;
+    private boolean mBusy = false;
+    private boolean mQuit = false;
+    private long mReceived = 0;
+    private long mDropped = 0;
+    private long mCoalesced = 0;
+    private final LatencyHistogram mHandlingTime = new LatencyHistogram();
+
+    public AsyncAccessibilityDelegate(AccessibilityDelegate delegate, int capacity, int policy) {
+        this(delegate, capacity, policy, null);
+    }
+
+    /**
+     * @param droppableEventTypes 队列满时可以合并或丢弃的事件类型，为null时所有事件都可以丢弃
+     */
+    public AsyncAccessibilityDelegate(AccessibilityDelegate delegate, int capacity, int policy, @Nullable Set<Integer> droppableEventTypes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity = " + capacity);
+        }
+        if (policy != POLICY_DROP_OLDEST && policy != POLICY_COALESCE_BY_TYPE && policy != POLICY_BLOCK) {
+            throw new IllegalArgumentException("policy = " + policy);
+        }
+        mDelegate = delegate;
+        mQueue = new AccessibilityEvent[capacity];
+        mPolicy = policy;
+        mDroppableEventTypes = droppableEventTypes;
+    }
+
+    @Override
+    public boolean onAccessibilityEvent(AccessibilityService service, AccessibilityEvent event) {
+        // 分发结束后事件会被系统回收，需要复制一份
+        AccessibilityEvent copy = AccessibilityEvent.obtain(event);
+        synchronized (mLock) {
+            if (mQuit) {
+                copy.recycle();
+                return false;
+            }
+            mService = service;
+            mReceived++;
+            ensureWorker();
+            if (mSize == mQueue.length && !makeRoom(copy.getEventType())) {
+                copy.recycle();
+                return false;
+            }
+            mQueue[(mHead + mSize) % mQueue.length] = copy;
+            mSize++;
+            mLock.notifyAll();
+        }
+        return false;
+    }
+
+    /**
+     * 队列已满时按策略腾出一个位置，返回false表示新事件被丢弃
+     */
+    private boolean makeRoom(int eventType) {
+        if (mPolicy == POLICY_BLOCK) {
+            return awaitRoom();
+        }
+        boolean droppable = isDroppable(eventType);
+        if (mPolicy == POLICY_COALESCE_BY_TYPE && droppable) {
+            for (int i = mSize - 1; i >= 0; i--) {
+                if (mQueue[(mHead + i) % mQueue.length].getEventType() == eventType) {
+                    removeAt(i);
+                    mCoalesced++;
+                    return true;
+                }
+            }
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (isDroppable(mQueue[(mHead + i) % mQueue.length].getEventType())) {
+                removeAt(i);
+                mDropped++;
+                return true;
+            }
+        }
+        if (droppable) {
+            mDropped++;
+            return false;
+        }
+        return awaitRoom();
+    }
+
+    private boolean isDroppable(int eventType) {
+        return mDroppableEventTypes == null || mDroppableEventTypes.contains(eventType);
+    }
+
+    private boolean awaitRoom() {
+        try {
+            while (mSize == mQueue.length && !mQuit) {
+                mLock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mDropped++;
+            return false;
+        }
+        return !mQuit;
+    }
+
+    private void removeAt(int i) {
+        int capacity = mQueue.length;
+        mQueue[(mHead + i) % capacity].recycle();
+        for (int j = i; j < mSize - 1; j++) {
+            mQueue[(mHead + j) % capacity] = mQueue[(mHead + j + 1) % capacity];
+        }
+        mQueue[(mHead + mSize - 1) % capacity] = null;
+        mSize--;
+    }
+
+    private void ensureWorker() {
+        if (mWorker != null)
+            return;
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, TAG + "-" + mDelegate.getClass().getSimpleName());
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    private void loop() {
+        while (true) {
+            AccessibilityService service;
+            AccessibilityEvent event;
+            synchronized (mLock) {
+                while (mSize == 0 && !mQuit) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mQuit)
+                    return;
+                event = mQueue[mHead];
+                mQueue[mHead] = null;
+                mHead = (mHead + 1) % mQueue.length;
+                mSize--;
+                service = mService;
+                mBusy = true;
+                mLock.notifyAll();
+            }
+            long start = System.nanoTime();
+            try {
+                mDelegate.onAccessibilityEvent(service, event);
+                mHandlingTime.record(System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "delegate " + mDelegate + " failed", e);
+            } finally {
+                event.recycle();
+                synchronized (mLock) {
+                    mBusy = false;
+                    mLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> getEventTypes() {
+        return mDelegate.getEventTypes();
+    }
+
+    public AccessibilityDelegate getDelegate() {
+        return mDelegate;
+    }
+
+    public int getPolicy() {
+        return mPolicy;
+    }
+
+    public int getCapacity() {
+        return mQueue.length;
+    }
+
+    /**
+     * 工作线程中处理每个事件的耗时
+     */
+    public LatencyHistogram getHandlingTime() {
+        return mHandlingTime;
+    }
+
+    public int getQueueSize() {
+        synchronized (mLock) {
+            return mSize;
+        }
+    }
+
+    public long getReceivedCount() {
+        synchronized (mLock) {
+            return mReceived;
+        }
+    }
+
+    /**
+     * 因队列已满而丢弃的事件数，不包括被合并的事件
+     */
+    public long getDroppedCount() {
+        synchronized (mLock) {
+            return mDropped;
+        }
+    }
+
+    /**
+     * 被同类型的新事件取代的事件数
+     */
+    public long getCoalescedCount() {
+        synchronized (mLock) {
+            return mCoalesced;
+        }
+    }
+
+    /**
+     * 等待队列中已有的事件都被委托处理完。不能在工作线程中调用。
+     *
+     * @return 是否在超时前处理完；等待期间收到的新事件也需要处理完
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (mLock) {
+            while ((mSize > 0 || mBusy) && !mQuit) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 停止工作线程，丢弃队列中的事件。之后收到的事件都会被忽略。
+     */
+    public void quit() {
+        synchronized (mLock) {
+            mQuit = true;
+            while (mSize > 0) {
+                removeAt(0);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return "AsyncAccessibilityDelegate{" +
+                    "mDelegate=" + mDelegate +
+                    ", mPolicy=" + mPolicy +
+                    ", mSize=" + mSize + "/" + mQueue.length +
+                    ", mReceived=" + mReceived +
+                    ", mDropped=" + mDropped +
+                    ", mCoalesced=" + mCoalesced +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.stardust.view.accessibility;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Stardust on 2017/6/7.
+ * <p>
+ * {@link ContentChangeCoalescer}中与事件类型无关的部分：键相同的事件在合并窗口内暂存并合并为一个，
+ * 窗口结束或遇到不可合并的事件时按暂存的先后顺序转发。事件的键、合并、复制和回收由子类实现，
+ * 定时由{@link Scheduler}完成，因此可以在没有Handler的环境中测试。只应在一个线程中使用。
+ */
+
+public abstract class CoalescingQueue<E> {
+
+    public interface Scheduler {
+
+        void schedule(Runnable runnable, long delayMillis);
+
+        void cancel(Runnable runnable);
+    }
+
+    private final Scheduler mScheduler;
+    private final Map<String, E> mPending = new LinkedHashMap<>();
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private long mWindowMillis;
+    private long mMerged = 0;
+
+    protected CoalescingQueue(Scheduler scheduler, long windowMillis) {
+        mScheduler = scheduler;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * 返回事件的键，键相同的事件可以合并。返回null表示该事件不可合并。
+     */
+    protected abstract String keyOf(E event);
+
+    /**
+     * 把event合并到暂存的pending中，无法合并时返回false
+     */
+    protected abstract boolean merge(E pending, E event);
+
+    /**
+     * 复制要暂存的事件，offer()返回后调用者可能回收原事件
+     */
+    protected abstract E copy(E event);
+
+    protected abstract void recycle(E event);
+
+    protected abstract void dispatch(E event);
+
+    /**
+     * 事件被暂存或合并到已暂存的事件中，稍后才会被转发。不能保留event。
+     */
+    protected void onHeld(E event) {
+
+    }
+
+    /**
+     * @param windowMillis 合并窗口的长度，不大于0时不合并
+     */
+    public void setWindowMillis(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return mWindowMillis;
+    }
+
+    /**
+     * 被合并掉(没有单独转发)的事件数
+     */
+    public long getMergedCount() {
+        return mMerged;
+    }
+
+    /**
+     * 暂存等待转发的事件数
+     */
+    public int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * 分发事件。可以合并的事件会被暂存，之后转发；其他事件在转发所有暂存的事件之后立即转发。
+     */
+    public void offer(E event) {
+        String key = mWindowMillis > 0 ? keyOf(event) : null;
+        if (key == null) {
+            flush();
+            dispatch(event);
+            return;
+        }
+        E pending = mPending.get(key);
+        if (pending != null) {
+            if (merge(pending, event)) {
+                mMerged++;
+                onHeld(event);
+                return;
+            }
+            flush();
+            dispatch(event);
+            return;
+        }
+        if (mPending.isEmpty()) {
+            mScheduler.schedule(mFlush, mWindowMillis);
+        }
+        mPending.put(key, copy(event));
+        onHeld(event);
+    }
+
+    /**
+     * 立即转发所有暂存的事件
+     */
+    public void flush() {
+        if (mPending.isEmpty())
+            return;
+        mScheduler.cancel(mFlush);
+        List<E> events = new ArrayList<>(mPending.values());
+        mPending.clear();
+        for (E event : events) {
+            try {
+                dispatch(event);
+            } finally {
+                recycle(event);
+            }
+        }
+    }
+
+    /**
+     * 丢弃并回收所有暂存的事件，取消等待中的转发。服务销毁时调用，此后不应再转发给委托。
+     */
+    public void clear() {
+        mScheduler.cancel(mFlush);
+        for (E event : mPending.values()) {
+            recycle(event);
+        }
+        mPending.clear();
+    }
+}
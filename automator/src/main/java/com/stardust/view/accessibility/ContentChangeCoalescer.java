@@ -0,0 +1,142 @@
+package com.stardust.view.accessibility;
+
+import android.os.Handler;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityRecord;
+
+import java.lang.reflect.Method;
+
+/**
+ * Created by Stardust on 2017/6/7.
+ * <p>
+ * 合并短时间内来源相同的TYPE_WINDOW_CONTENT_CHANGED事件。同一窗口中同一来源的内容变化事件在合并窗口内只转发一次，
+ * 转发的事件的contentChangeTypes为各事件的并集(有一个为UNDEFINED时为UNDEFINED)。
+ * <p>
+ * 其他类型的事件到来前会先转发所有等待中的事件，因此事件之间的相对顺序不变。
+ * 事件来源的id由隐藏接口AccessibilityRecord.getSourceNodeId()获得；复制的事件是密封的，修改contentChangeTypes时需要通过隐藏接口setSealed()暂时解封。
+ * 这些接口不可用时不合并。暂存和转发的顺序由{@link CoalescingQueue}实现，只应在一个线程(Handler所在线程)中使用。
+ * <p>
+ * 被暂存的事件要等合并窗口结束才转发，需要立即知道内容已变化的委托(例如判断缓存是否过期)应实现{@link HeldEventListener}，
+ * 由Dispatcher在事件被暂存时通知它们。
+ */
+
+public class ContentChangeCoalescer extends CoalescingQueue<AccessibilityEvent> {
+
+    public interface Dispatcher {
+
+        void dispatch(AccessibilityEvent event);
+
+        /**
+         * 事件被暂存或合并到已暂存的事件中，稍后才会被转发(合并的事件不再单独转发)。在offer()中调用，不能保留event。
+         */
+        void onHeld(AccessibilityEvent event);
+    }
+
+    /**
+     * 事件被暂存时就需要得知的委托。之后仍会通过onAccessibilityEvent收到合并后的事件。
+     */
+    public interface HeldEventListener {
+
+        void onEventHeld(AccessibilityEvent event);
+    }
+
+    private static final String TAG = "ContentChangeCoalescer";
+
+    // 隐藏接口在第一次需要时才查找，使没有用到它们的代码(例如测试union)不必加载
+    private static class HiddenApi {
+
+        static final Method GET_SOURCE_NODE_ID = findMethod("getSourceNodeId");
+        static final Method SET_SEALED = findMethod("setSealed", boolean.class);
+
+        private static Method findMethod(String name, Class<?>... parameterTypes) {
+            try {
+                Method method = AccessibilityRecord.class.getDeclaredMethod(name, parameterTypes);
+                method.setAccessible(true);
+                return method;
+            } catch (Exception e) {
+                Log.w(TAG, name + " unavailable, content change events will not be coalesced", e);
+                return null;
+            }
+        }
+    }
+
+    private final Dispatcher mDispatcher;
+
+    public ContentChangeCoalescer(final Handler handler, long windowMillis, Dispatcher dispatcher) {
+        super(new Scheduler() {
+            @Override
+            public void schedule(Runnable runnable, long delayMillis) {
+                handler.postDelayed(runnable, delayMillis);
+            }
+
+            @Override
+            public void cancel(Runnable runnable) {
+                handler.removeCallbacks(runnable);
+            }
+        }, windowMillis);
+        mDispatcher = dispatcher;
+    }
+
+    @Override
+    protected String keyOf(AccessibilityEvent event) {
+        if (event.getEventType() != AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED)
+            return null;
+        if (HiddenApi.GET_SOURCE_NODE_ID == null || HiddenApi.SET_SEALED == null)
+            return null;
+        try {
+            return event.getWindowId() + "/" + HiddenApi.GET_SOURCE_NODE_ID.invoke(event);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected boolean merge(AccessibilityEvent pending, AccessibilityEvent event) {
+        int types = union(pending.getContentChangeTypes(), event.getContentChangeTypes());
+        return types == pending.getContentChangeTypes() || setContentChangeTypes(pending, types);
+    }
+
+    @Override
+    protected AccessibilityEvent copy(AccessibilityEvent event) {
+        // 分发结束后事件会被系统回收，需要复制一份
+        return AccessibilityEvent.obtain(event);
+    }
+
+    @Override
+    protected void recycle(AccessibilityEvent event) {
+        event.recycle();
+    }
+
+    @Override
+    protected void dispatch(AccessibilityEvent event) {
+        mDispatcher.dispatch(event);
+    }
+
+    @Override
+    protected void onHeld(AccessibilityEvent event) {
+        mDispatcher.onHeld(event);
+    }
+
+    /**
+     * 合并后的contentChangeTypes，有一个为UNDEFINED(需要重新获取整个子树)时为UNDEFINED
+     */
+    static int union(int types1, int types2) {
+        if (types1 == AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED || types2 == AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED) {
+            return AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED;
+        }
+        return types1 | types2;
+    }
+
+    private static boolean setContentChangeTypes(AccessibilityEvent event, int types) {
+        try {
+            HiddenApi.SET_SEALED.invoke(event, false);
+            event.setContentChangeTypes(types);
+            HiddenApi.SET_SEALED.invoke(event, true);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "failed to merge content change types", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.stardust.view.accessibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Created by Stardust on 2017/6/6.
+ * <p>
+ * 按事件类型预先分好组的AccessibilityDelegate表，不可修改。事件类型都是单独的一位，
+ * 第i组是关心类型(1 << i)的委托，按优先级排列，分发事件时只需一次数组访问。
+ * <p>
+ * 委托的getEventTypes()只在建表时调用一次，因此它的返回值不能变化。委托变化时应重新建表并整体替换。
+ * 每个委托的统计{@link AccessibilityMetrics.DelegateMetrics}也在建表时取得，与委托一一对应。
+ */
+
+public class DelegateDispatchTable {
+
+    public static final DelegateDispatchTable EMPTY = new DelegateDispatchTable(new AccessibilityDelegate[Integer.SIZE][],
+            new AccessibilityMetrics.DelegateMetrics[Integer.SIZE][]);
+
+    private static final AccessibilityDelegate[] NONE = new AccessibilityDelegate[0];
+    private static final AccessibilityMetrics.DelegateMetrics[] NO_METRICS = new AccessibilityMetrics.DelegateMetrics[0];
+
+    private final AccessibilityDelegate[][] mDelegates;
+    private final AccessibilityMetrics.DelegateMetrics[][] mMetrics;
+
+    private DelegateDispatchTable(AccessibilityDelegate[][] delegates, AccessibilityMetrics.DelegateMetrics[][] metrics) {
+        for (int i = 0; i < delegates.length; i++) {
+            if (delegates[i] == null) {
+                delegates[i] = NONE;
+                metrics[i] = NO_METRICS;
+            }
+        }
+        mDelegates = delegates;
+        mMetrics = metrics;
+    }
+
+    /**
+     * @param delegates 按优先级排序的委托
+     */
+    public static DelegateDispatchTable build(SortedMap<Integer, AccessibilityDelegate> delegates, AccessibilityMetrics metrics) {
+        List<List<AccessibilityDelegate>> groups = new ArrayList<>(Integer.SIZE);
+        for (int i = 0; i < Integer.SIZE; i++) {
+            groups.add(new ArrayList<AccessibilityDelegate>());
+        }
+        for (Map.Entry<Integer, AccessibilityDelegate> entry : delegates.entrySet()) {
+            AccessibilityDelegate delegate = entry.getValue();
+            int mask = maskOf(delegate.getEventTypes());
+            for (int i = 0; i < Integer.SIZE; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    groups.get(i).add(delegate);
+                }
+            }
+        }
+        AccessibilityDelegate[][] table = new AccessibilityDelegate[Integer.SIZE][];
+        AccessibilityMetrics.DelegateMetrics[][] metricsTable = new AccessibilityMetrics.DelegateMetrics[Integer.SIZE][];
+        for (int i = 0; i < Integer.SIZE; i++) {
+            List<AccessibilityDelegate> group = groups.get(i);
+            if (group.isEmpty()) {
+                continue;
+            }
+            table[i] = group.toArray(new AccessibilityDelegate[group.size()]);
+            metricsTable[i] = new AccessibilityMetrics.DelegateMetrics[group.size()];
+            for (int j = 0; j < group.size(); j++) {
+                metricsTable[i][j] = metrics.getDelegateMetrics(group.get(j));
+            }
+        }
+        return new DelegateDispatchTable(table, metricsTable);
+    }
+
+    private static int maskOf(Set<Integer> eventTypes) {
+        if (eventTypes == AccessibilityDelegate.ALL_EVENT_TYPES) {
+            return -1;
+        }
+        int mask = 0;
+        for (int eventType : eventTypes) {
+            mask |= eventType;
+        }
+        return mask;
+    }
+
+    /**
+     * 返回关心eventType的委托，按优先级排列。返回的数组不能修改。
+     */
+    public AccessibilityDelegate[] get(int eventType) {
+        if (eventType == 0 || (eventType & (eventType - 1)) != 0) {
+            return NONE;
+        }
+        return mDelegates[Integer.numberOfTrailingZeros(eventType)];
+    }
+
+    /**
+     * 返回与{@link #get(int)}一一对应的委托统计
+     */
+    public AccessibilityMetrics.DelegateMetrics[] getMetrics(int eventType) {
+        if (eventType == 0 || (eventType & (eventType - 1)) != 0) {
+            return NO_METRICS;
+        }
+        return mMetrics[Integer.numberOfTrailingZeros(eventType)];
+    }
+}
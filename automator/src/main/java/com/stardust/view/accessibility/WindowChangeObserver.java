@@ -0,0 +1,98 @@
+package com.stardust.view.accessibility;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by Stardust on 2017/5/21.
+ * <p>
+ * 记录窗口内容的"代数"，每次窗口状态或内容变化时加一。等待窗口变化的线程可以阻塞在这里而不必反复遍历控件树。
+ * 同时记录每个窗口最后一次变化时的代数，用于判断某个窗口的缓存是否过期。
+ * 内容变化事件被合并暂存时代数就会增加，不必等到合并后的事件被转发。
+ */
+
+public class WindowChangeObserver implements AccessibilityDelegate, ContentChangeCoalescer.HeldEventListener {
+
+    private static final Set<Integer> EVENT_TYPES = new HashSet<>(Arrays.asList(
+            AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED,
+            AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED,
+            AccessibilityEvent.TYPE_WINDOWS_CHANGED));
+
+    private static final int MAX_WINDOWS = 64;
+
+    private final Object mLock = new Object();
+    private volatile long mGeneration = 0;
+    private final Map<Integer, Long> mWindowGenerations = new HashMap<>();
+    // 清空mWindowGenerations时的代数，没有记录的窗口视为在此时变化过
+    private long mWindowGenerationFloor = 0;
+
+    @Override
+    public boolean onAccessibilityEvent(AccessibilityService service, AccessibilityEvent event) {
+        onWindowChanged(event.getWindowId());
+        return false;
+    }
+
+    @Override
+    public void onEventHeld(AccessibilityEvent event) {
+        onWindowChanged(event.getWindowId());
+    }
+
+    private void onWindowChanged(int windowId) {
+        synchronized (mLock) {
+            mGeneration++;
+            if (windowId != -1) {
+                if (mWindowGenerations.size() >= MAX_WINDOWS && !mWindowGenerations.containsKey(windowId)) {
+                    mWindowGenerations.clear();
+                    mWindowGenerationFloor = mGeneration;
+                }
+                mWindowGenerations.put(windowId, mGeneration);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public Set<Integer> getEventTypes() {
+        return EVENT_TYPES;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * 返回窗口最后一次变化时的代数，两次返回值相同说明窗口在此期间没有变化。
+     */
+    public long getWindowGeneration(int windowId) {
+        synchronized (mLock) {
+            Long generation = mWindowGenerations.get(windowId);
+            return generation == null ? mWindowGenerationFloor : generation;
+        }
+    }
+
+    /**
+     * 等待窗口在generation之后发生变化。
+     *
+     * @return 窗口是否已变化。超时返回false
+     */
+    public boolean waitForChange(long generation, long timeout) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeout;
+        synchronized (mLock) {
+            while (mGeneration == generation) {
+                long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                mLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.stardust.view.accessibility;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Stardust on 2017/6/2.
+ * <p>
+ * 按窗口id缓存各个窗口的根节点，只有WindowChangeObserver记录到该窗口变化后才重新获取。
+ * 需要Android 5.0以上，并且服务开启了flagRetrieveInteractiveWindows。
+ */
+
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class WindowRootCache {
+
+    private static final Comparator<AccessibilityWindowInfo> TOP_FIRST = new Comparator<AccessibilityWindowInfo>() {
+        @Override
+        public int compare(AccessibilityWindowInfo o1, AccessibilityWindowInfo o2) {
+            return o2.getLayer() - o1.getLayer();
+        }
+    };
+
+    private static class Entry {
+
+        final AccessibilityNodeInfo root;
+        final long generation;
+
+        Entry(AccessibilityNodeInfo root, long generation) {
+            this.root = root;
+            this.generation = generation;
+        }
+    }
+
+    private final WindowChangeObserver mObserver;
+    private Map<Integer, Entry> mRoots = new HashMap<>();
+
+    public WindowRootCache(WindowChangeObserver observer) {
+        mObserver = observer;
+    }
+
+    /**
+     * 返回所有窗口根节点的副本，按z序从上到下排列。副本由调用者负责。
+     */
+    public synchronized List<AccessibilityNodeInfo> getRoots(AccessibilityService service) {
+        List<AccessibilityWindowInfo> windows = new ArrayList<>(service.getWindows());
+        Collections.sort(windows, TOP_FIRST);
+        List<AccessibilityNodeInfo> roots = new ArrayList<>(windows.size());
+        Map<Integer, Entry> alive = new HashMap<>();
+        for (AccessibilityWindowInfo window : windows) {
+            int id = window.getId();
+            // 先读取代数再获取根节点，获取期间发生的变化会在下次被发现
+            long generation = mObserver.getWindowGeneration(id);
+            Entry entry = mRoots.remove(id);
+            if (entry == null || entry.generation != generation) {
+                if (entry != null) {
+                    entry.root.recycle();
+                }
+                AccessibilityNodeInfo root = window.getRoot();
+                entry = root == null ? null : new Entry(root, generation);
+            }
+            if (entry != null) {
+                alive.put(id, entry);
+                roots.add(AccessibilityNodeInfo.obtain(entry.root));
+            }
+            window.recycle();
+        }
+        // 已经关闭的窗口
+        recycle(mRoots);
+        mRoots = alive;
+        return roots;
+    }
+
+    public synchronized void clear() {
+        recycle(mRoots);
+        mRoots = new HashMap<>();
+    }
+
+    private static void recycle(Map<Integer, Entry> roots) {
+        for (Entry entry : roots.values()) {
+            entry.root.recycle();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.stardust.automator;
+
+import android.accessibilityservice.AccessibilityService;
+import android.view.accessibility.AccessibilityEvent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/9.
+ */
+public class AccessibilityEventCommandHostTest {
+
+    private static class CountCommand extends AccessibilityEventCommandHost.AbstractCommand {
+
+        int count = 0;
+
+        @Override
+        public void execute(AccessibilityService service, AccessibilityEvent event) {
+            count++;
+        }
+    }
+
+    @Test
+    public void executeOnNextEvent() throws Exception {
+        AccessibilityEventCommandHost host = new AccessibilityEventCommandHost();
+        host.setRunMode(AccessibilityEventCommandHost.RUN_MODE_SINGLE_THREAD);
+        CountCommand command = new CountCommand();
+        Future<Void> future = host.submit(command);
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException ignored) {
+        }
+        host.onAccessibilityEvent(null, null);
+        // 命令已经执行完，之后再等待也不会错过
+        future.get(10, TimeUnit.MILLISECONDS);
+        assertEquals(1, command.count);
+        host.onAccessibilityEvent(null, null);
+        assertEquals(1, command.count);
+        assertEquals(0, host.getPendingCount());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        AccessibilityEventCommandHost host = new AccessibilityEventCommandHost();
+        host.setRunMode(AccessibilityEventCommandHost.RUN_MODE_SINGLE_THREAD);
+        CountCommand command = new CountCommand();
+        assertFalse(host.executeAndWaitForEvent(command, 10, TimeUnit.MILLISECONDS));
+        assertFalse(command.isValid());
+        host.onAccessibilityEvent(null, null);
+        assertEquals(0, command.count);
+
+        Future<Void> future = host.submit(command);
+        assertTrue(future.cancel(true));
+        host.onAccessibilityEvent(null, null);
+        assertEquals(0, command.count);
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException ignored) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.stardust.automator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/26.
+ */
+public class BoundsIndexTest {
+
+    @Test
+    public void find() throws Exception {
+        Random random = new Random(0);
+        for (int count : new int[]{0, 1, 15, 16, 17, 300, 5000}) {
+            int[] bounds = new int[count * 4];
+            for (int i = 0; i < count; i++) {
+                int l = random.nextInt(1080), t = random.nextInt(1920);
+                bounds[i * 4] = l;
+                bounds[i * 4 + 1] = t;
+                bounds[i * 4 + 2] = l + random.nextInt(400) - 20;
+                bounds[i * 4 + 3] = t + random.nextInt(400) - 20;
+            }
+            BoundsIndex index = new BoundsIndex(bounds, count);
+            for (int q = 0; q < 50; q++) {
+                int l, t, r, b;
+                if (count > 0 && q % 5 == 0) {
+                    int i = random.nextInt(count);
+                    l = bounds[i * 4];
+                    t = bounds[i * 4 + 1];
+                    r = bounds[i * 4 + 2];
+                    b = bounds[i * 4 + 3];
+                } else {
+                    l = random.nextInt(1080);
+                    t = random.nextInt(1920);
+                    r = l + random.nextInt(600);
+                    b = t + random.nextInt(600);
+                }
+                for (int type = BoundsIndex.TYPE_EQUALS; type <= BoundsIndex.TYPE_CONTAINS; type++) {
+                    assertEquals(bruteForce(bounds, count, l, t, r, b, type), toList(index.find(l, t, r, b, type)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hitTest() throws Exception {
+        int[] bounds = {
+                0, 0, 100, 100,
+                0, 0, 50, 50,
+                10, 10, 20, 20,
+                50, 50, 100, 100
+        };
+        BoundsIndex index = new BoundsIndex(bounds, 4);
+        assertEquals(2, index.hitTest(15, 15));
+        assertEquals(1, index.hitTest(30, 30));
+        assertEquals(3, index.hitTest(50, 50));
+        assertEquals(-1, index.hitTest(100, 100));
+    }
+
+    private static List<Integer> bruteForce(int[] bounds, int count, int l, int t, int r, int b, int type) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (BoundsIndex.matches(type, l, t, r, b, bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3])) {
+                list.add(i);
+            }
+        }
+        return list;
+    }
+
+    private static List<Integer> toList(int[] array) {
+        List<Integer> list = new ArrayList<>();
+        for (int i : array) {
+            list.add(i);
+        }
+        return list;
+    }
+
+}
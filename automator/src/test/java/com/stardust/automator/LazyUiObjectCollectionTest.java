@@ -0,0 +1,62 @@
+package com.stardust.automator;
+
+import com.stardust.automator.test.TestTreeUiObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/5.
+ */
+public class LazyUiObjectCollectionTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestTreeUiObject.alive = 0;
+    }
+
+    @Test
+    public void findLazily() throws Exception {
+        TestTreeUiObject root = new TestTreeUiObject();
+        UiGlobalSelector selector = new UiGlobalSelector().scrollable();
+
+        UiObject first = selector.findLazily(root).first();
+        assertNotNull(first);
+        assertEquals(8, ((TestTreeUiObject) first).getNumber());
+        assertEquals(2, TestTreeUiObject.alive);
+        first.recycle();
+
+        UiObjectCollection all = selector.findOf(root);
+        assertEquals(8, all.size());
+        UiObjectCollection taken = selector.findLazily(root).take(3).toCollection();
+        assertEquals(3, taken.size());
+        for (int i = 0; i < taken.size(); i++) {
+            assertEquals(((TestTreeUiObject) all.get(i)).getNumber(), ((TestTreeUiObject) taken.get(i)).getNumber());
+            all.get(i).recycle();
+            taken.get(i).recycle();
+        }
+        for (int i = taken.size(); i < all.size(); i++) {
+            all.get(i).recycle();
+        }
+        assertEquals(1, TestTreeUiObject.alive);
+
+        LazyUiObjectCollection filtered = selector.findLazily(root).filter(new LazyUiObjectCollection.Predicate() {
+            @Override
+            public boolean test(UiObject node) {
+                return ((TestTreeUiObject) node).getNumber() % 2 == 1;
+            }
+        });
+        UiObject odd = filtered.next();
+        assertNotNull(odd);
+        assertEquals(9, ((TestTreeUiObject) odd).getNumber());
+        filtered.close();
+        assertTrue(filtered.isClosed());
+        assertNull(filtered.next());
+        odd.recycle();
+        // 被filter拒绝的节点8已交还游标回收
+        assertEquals(1, TestTreeUiObject.alive);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.stardust.automator;
+
+import com.stardust.automator.test.TestTreeUiObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ */
+public class MultiSelectorTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TestTreeUiObject.alive = 0;
+    }
+
+    @Test
+    public void match() throws Exception {
+        TestTreeUiObject root = new TestTreeUiObject();
+        MultiSelector.Match match = new MultiSelector(
+                new UiGlobalSelector().clickable(),
+                new UiGlobalSelector().scrollable()).match(root, 1);
+        assertNotNull(match);
+        assertEquals(1, match.getIndex());
+        assertEquals(3, ((TestTreeUiObject) match.getNode()).getDepth());
+        assertEquals(2, TestTreeUiObject.alive);
+        match.getNode().recycle();
+
+        match = new MultiSelector(
+                new UiGlobalSelector().scrollable(),
+                new UiGlobalSelector()).match(root, 2);
+        assertNotNull(match);
+        assertEquals(0, match.getIndex());
+        assertEquals(2, match.getResult().size());
+        assertEquals(3, TestTreeUiObject.alive);
+        match.getResult().get(0).recycle();
+        match.getResult().get(1).recycle();
+
+        match = new MultiSelector(
+                new UiGlobalSelector().clickable(),
+                new UiGlobalSelector().scrollable().maxDepth(3)).match(root, 1);
+        assertNotNull(match);
+        assertEquals(1, match.getIndex());
+        match.getNode().recycle();
+
+        assertNull(new MultiSelector(new UiGlobalSelector().clickable()).match(root, 1));
+        assertEquals(1, TestTreeUiObject.alive);
+        root.recycle();
+    }
+
+    @Test
+    public void answerByNativeQueryFirst() throws Exception {
+        final UiObject button = new UiObject(null) {
+            @Override
+            public String getViewIdResourceName() {
+                return "com.example:id/button";
+            }
+
+            @Override
+            public void recycle() {
+
+            }
+        };
+        // 按id查找已经找到时不需要遍历
+        TestTreeUiObject root = new TestTreeUiObject() {
+            @Override
+            public List<UiObject> findByViewId(String viewId) {
+                return Collections.singletonList(button);
+            }
+
+            @Override
+            public UiObject child(int i) {
+                throw new AssertionError("walked");
+            }
+        };
+        MultiSelector.Match match = new MultiSelector(
+                new UiGlobalSelector().id("com.example:id/button"),
+                new UiGlobalSelector().scrollable()).match(root, 1);
+        assertNotNull(match);
+        assertEquals(0, match.getIndex());
+        assertSame(button, match.getNode());
+
+        // 位置在前的选择器仍需遍历，找不到时使用查找的结果
+        root = new TestTreeUiObject() {
+            @Override
+            public List<UiObject> findByViewId(String viewId) {
+                return Collections.singletonList(button);
+            }
+        };
+        match = new MultiSelector(
+                new UiGlobalSelector().clickable(),
+                new UiGlobalSelector().id("com.example:id/button")).match(root, 1);
+        assertNotNull(match);
+        assertEquals(1, match.getIndex());
+        assertSame(button, match.getNode());
+    }
+}
@@ -0,0 +1,112 @@
+package com.stardust.automator;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Stardust on 2017/6/10.
+ * <p>
+ * 属性和子节点都可以修改的测试用控件，用于模拟窗口内容变化。UiSnapshot捕获时读取的属性都被覆盖，不需要真实节点。
+ */
+public class MutableUiObject extends UiObject {
+
+    public String text;
+    public String desc;
+    public String className = "android.view.View";
+    public String id;
+    public int flags = UiSnapshot.FLAG_VISIBLE_TO_USER | UiSnapshot.FLAG_ENABLED;
+    public int drawingOrder;
+    public final int[] bounds = new int[4];
+    public final List<MutableUiObject> children = new ArrayList<>();
+
+    public MutableUiObject(String text, MutableUiObject... children) {
+        super(null);
+        this.text = text;
+        this.children.addAll(Arrays.asList(children));
+    }
+
+    public MutableUiObject bounds(int left, int top, int right, int bottom) {
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+        return this;
+    }
+
+    @Override
+    public UiObject child(int i) {
+        return children.get(i);
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.size();
+    }
+
+    @Override
+    public int getFlags(int mask) {
+        return flags & mask;
+    }
+
+    @Override
+    public boolean isClickable() {
+        return (flags & UiSnapshot.FLAG_CLICKABLE) != 0;
+    }
+
+    @Override
+    public boolean isScrollable() {
+        return (flags & UiSnapshot.FLAG_SCROLLABLE) != 0;
+    }
+
+    @Override
+    public int getDrawingOrder() {
+        return drawingOrder;
+    }
+
+    @Override
+    public void getBoundsInScreen(Rect outBounds) {
+        // 直接写字段，不调用Rect的方法
+        outBounds.left = bounds[0];
+        outBounds.top = bounds[1];
+        outBounds.right = bounds[2];
+        outBounds.bottom = bounds[3];
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public CharSequence getContentDescription() {
+        return desc;
+    }
+
+    @Override
+    public CharSequence getClassName() {
+        return className;
+    }
+
+    @Override
+    public CharSequence getPackageName() {
+        return "com.example";
+    }
+
+    @Override
+    public String getViewIdResourceName() {
+        return id;
+    }
+
+    @Override
+    public void recycle() {
+
+    }
+
+    @Override
+    public String toString() {
+        return "MutableUiObject{" + text + "}";
+    }
+}
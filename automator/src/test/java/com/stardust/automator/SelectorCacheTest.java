@@ -0,0 +1,123 @@
+package com.stardust.automator;
+
+import android.support.annotation.Nullable;
+
+import com.stardust.view.accessibility.AccessibilityNodeInfoAllocator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/24.
+ */
+public class SelectorCacheTest {
+
+    private static class Node extends UiObject {
+
+        final String name;
+        boolean recycled;
+
+        Node(String name) {
+            super(null);
+            this.name = name;
+        }
+
+        @Override
+        public void recycle() {
+            assertFalse(name + " recycled twice", recycled);
+            recycled = true;
+        }
+    }
+
+    /**
+     * 用普通对象代替真实节点的副本，记录所有副本以检查回收
+     */
+    private static class TestCache extends SelectorCache {
+
+        final List<Node> copies = new ArrayList<>();
+
+        TestCache() {
+            super(4, Long.MAX_VALUE);
+        }
+
+        @Override
+        protected boolean isCacheable(UiObject object) {
+            return object instanceof Node;
+        }
+
+        @Override
+        protected UiObject copy(UiObject object, @Nullable AccessibilityNodeInfoAllocator allocator) {
+            Node copy = new Node(((Node) object).name);
+            copies.add(copy);
+            return copy;
+        }
+    }
+
+    private TestCache mCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mCache = new TestCache();
+    }
+
+    @Test
+    public void hitReturnsFreshCopies() throws Exception {
+        Node a = new Node("a"), b = new Node("b");
+        mCache.put("text(\"x\")", 10, 1, collectionOf(a, b));
+        UiObjectCollection first = mCache.get("text(\"x\")", 10, 1);
+        UiObjectCollection second = mCache.get("text(\"x\")", 10, 1);
+        assertEquals(Arrays.asList("a", "b"), names(first));
+        assertEquals(Arrays.asList("a", "b"), names(second));
+        assertNotSame(first.get(0), second.get(0));
+        assertNotSame(a, first.get(0));
+
+        // 调用者回收命中的结果不影响缓存
+        first.get(0).recycle();
+        assertEquals(Arrays.asList("a", "b"), names(mCache.get("text(\"x\")", 10, 1)));
+        // 缓存保存的是副本，结果本身仍归调用者所有
+        assertFalse(a.recycled);
+
+        // 结果完整(少于limit个)时更大的limit也能命中；limit更小时只返回前面的节点
+        assertEquals(Arrays.asList("a", "b"), names(mCache.get("text(\"x\")", 100, 1)));
+        assertEquals(Collections.singletonList("a"), names(mCache.get("text(\"x\")", 1, 1)));
+    }
+
+    @Test
+    public void generationChangeInvalidates() throws Exception {
+        mCache.put("text(\"x\")", 10, 1, collectionOf(new Node("a")));
+        mCache.put("text(\"y\")", 10, 1, collectionOf(new Node("b")));
+        assertNotNull(mCache.get("text(\"x\")", 10, 1));
+
+        assertNull(mCache.get("text(\"x\")", 10, 2));
+        assertNull(mCache.get("text(\"y\")", 10, 2));
+        // 失效时缓存保存的副本都被回收
+        assertTrue(mCache.copies.get(0).recycled);
+        assertTrue(mCache.copies.get(1).recycled);
+    }
+
+    @Test
+    public void emptyResultNotCached() throws Exception {
+        mCache.put("text(\"x\")", 10, 1, UiObjectCollection.of(Collections.<UiObject>emptyList()));
+        assertNull(mCache.get("text(\"x\")", 10, 1));
+        assertTrue(mCache.copies.isEmpty());
+    }
+
+    private static UiObjectCollection collectionOf(UiObject... nodes) {
+        return UiObjectCollection.of(Arrays.asList(nodes));
+    }
+
+    private static List<String> names(UiObjectCollection collection) {
+        List<String> names = new ArrayList<>(collection.size());
+        for (int i = 0; i < collection.size(); i++) {
+            names.add(((Node) collection.get(i)).name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,34 @@
+package com.stardust.automator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/3.
+ */
+public class SelectorExpressionTest {
+
+    @Test
+    public void parse() throws Exception {
+        assertEquals(new UiGlobalSelector().className("Button").textStartsWith("Send").clickable(true).getSignature(),
+                new UiGlobalSelector().query("button[text^=Send][clickable]").getSignature());
+        assertEquals(new UiGlobalSelector().id("com.a:id/b").desc("a ] b").enabled(false).drawingOrder(2).getSignature(),
+                new UiGlobalSelector().query(" *[ id = com.a:id/b ] [desc=\"a ] b\"][enabled=false][drawingOrder= 2 ]").getSignature());
+        assertEquals(new UiGlobalSelector().className("android.view.View").textMatches("\\d+").getSignature(),
+                new UiGlobalSelector().query("android.view.View[text~='\\\\d+']").getSignature());
+    }
+
+    @Test
+    public void error() throws Exception {
+        String[] invalid = {"button[", "[text]", "[unknown]", "[clickable=yes]", "[text=\"a]", "[drawingOrder^=1]", "[text=a]x"};
+        for (String expression : invalid) {
+            try {
+                new UiGlobalSelector().query(expression);
+                fail(expression);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.stardust.automator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/10.
+ */
+public class UiSnapshotTest {
+
+    private MutableUiObject mRoot;
+    private MutableUiObject mA;
+    private MutableUiObject mA1;
+    private MutableUiObject mB;
+    private MutableUiObject mC;
+
+    @Before
+    public void setUp() throws Exception {
+        mA1 = new MutableUiObject("a1").bounds(0, 0, 50, 50);
+        mA = new MutableUiObject("a", mA1, new MutableUiObject("a2").bounds(50, 0, 100, 50)).bounds(0, 0, 100, 50);
+        mB = new MutableUiObject("b", new MutableUiObject("b1", new MutableUiObject("b11"))).bounds(0, 50, 100, 100);
+        mC = new MutableUiObject("c").bounds(0, 100, 100, 150);
+        mRoot = new MutableUiObject("root", mA, mB, mC).bounds(0, 0, 100, 150);
+    }
+
+    @Test
+    public void replaceSubtreeMatchesFreshCapture() throws Exception {
+        // 增大中间的子树
+        UiSnapshot snapshot = UiSnapshot.capture(mRoot);
+        UiSnapshot original = UiSnapshot.capture(mRoot);
+        mB.children.clear();
+        mB.children.add(new MutableUiObject("x").bounds(0, 50, 30, 60));
+        mB.children.add(new MutableUiObject("y", new MutableUiObject("y1"), new MutableUiObject("y2")));
+        mB.drawingOrder = 3;
+        UiSnapshot patched = snapshot.replaceSubtree(indexOfText(snapshot, "b"), UiSnapshot.capture(mB));
+        assertSameSnapshot(UiSnapshot.capture(mRoot), patched);
+        // 原快照不变
+        assertSameSnapshot(original, snapshot);
+
+        // 缩小第一个子树
+        mA.children.clear();
+        patched = patched.replaceSubtree(indexOfText(patched, "a"), UiSnapshot.capture(mA));
+        assertSameSnapshot(UiSnapshot.capture(mRoot), patched);
+
+        // 最后一个子树
+        mC.children.add(new MutableUiObject("c1"));
+        patched = patched.replaceSubtree(indexOfText(patched, "c"), UiSnapshot.capture(mC));
+        assertSameSnapshot(UiSnapshot.capture(mRoot), patched);
+
+        // 整棵树
+        mRoot.children.remove(mB);
+        patched = patched.replaceSubtree(0, UiSnapshot.capture(mRoot));
+        assertSameSnapshot(UiSnapshot.capture(mRoot), patched);
+    }
+
+    @Test
+    public void replaceNodeMatchesFreshCapture() throws Exception {
+        UiSnapshot snapshot = UiSnapshot.capture(mRoot);
+        UiSnapshot original = UiSnapshot.capture(mRoot);
+        mA1.text = "changed";
+        mA1.desc = "desc";
+        mA1.flags |= UiSnapshot.FLAG_CHECKED;
+        mA1.bounds(10, 10, 40, 40);
+        UiSnapshot patched = snapshot.replaceNode(indexOfText(snapshot, "a1"), mA1);
+        assertSameSnapshot(UiSnapshot.capture(mRoot), patched);
+        assertSameSnapshot(original, snapshot);
+        assertEquals("changed", patched.getObject(indexOfText(patched, "changed")).getText());
+    }
+
+    private static int indexOfText(UiSnapshot snapshot, String text) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (text.equals(snapshot.text(i))) {
+                return i;
+            }
+        }
+        throw new AssertionError(text + " not found");
+    }
+
+    private static void assertSameSnapshot(UiSnapshot expected, UiSnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String node = "node " + i + " (" + expected.text(i) + ")";
+            assertEquals(node, expected.parent(i), actual.parent(i));
+            assertEquals(node, expected.depth(i), actual.depth(i));
+            assertEquals(node, expected.subtreeSize(i), actual.subtreeSize(i));
+            assertEquals(node, expected.childCount(i), actual.childCount(i));
+            for (int j = 0; j < expected.childCount(i); j++) {
+                assertEquals(node, expected.child(i, j), actual.child(i, j));
+            }
+            assertEquals(node, expected.flags(i), actual.flags(i));
+            assertEquals(node, expected.drawingOrder(i), actual.drawingOrder(i));
+            assertEquals(node, expected.left(i), actual.left(i));
+            assertEquals(node, expected.top(i), actual.top(i));
+            assertEquals(node, expected.right(i), actual.right(i));
+            assertEquals(node, expected.bottom(i), actual.bottom(i));
+            assertEquals(node, expected.text(i), actual.text(i));
+            assertEquals(node, expected.desc(i), actual.desc(i));
+            assertEquals(node, expected.className(i), actual.className(i));
+            assertEquals(node, expected.packageName(i), actual.packageName(i));
+            assertEquals(node, expected.id(i), actual.id(i));
+            assertSame(node, expected.getNode(i), actual.getNode(i));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.stardust.automator;
+
+import com.stardust.automator.test.TestUiObject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/28.
+ */
+public class UiTreeWalkerTest {
+
+    @Test
+    public void walk() throws Exception {
+        TestUiObject.count = 0;
+        UiObject root = new TestUiObject(10);
+        final List<UiObject> retained = new ArrayList<>();
+        UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                if (depth > 0 && node.isClickable()) {
+                    retained.add(node);
+                    return UiTreeWalker.CONTINUE | UiTreeWalker.RETAIN;
+                }
+                return depth >= 20 ? UiTreeWalker.SKIP_CHILDREN : UiTreeWalker.CONTINUE;
+            }
+        });
+        assertEquals(retained.size() + 1, TestUiObject.count);
+        for (UiObject node : retained) {
+            node.recycle();
+        }
+        root.recycle();
+        assertEquals(0, TestUiObject.count);
+    }
+
+    @Test
+    public void stop() throws Exception {
+        TestUiObject.count = 0;
+        UiObject root = new TestUiObject(10);
+        final int[] visited = new int[1];
+        UiTreeWalker.walk(root, new UiTreeWalker.Visitor() {
+            @Override
+            public int visit(UiObject node, int depth) {
+                return ++visited[0] == 5 ? UiTreeWalker.STOP : UiTreeWalker.CONTINUE;
+            }
+        });
+        assertEquals(5, visited[0]);
+        assertEquals(1, TestUiObject.count);
+        root.recycle();
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/22.
+ */
+public class AndFilterTest {
+
+    @Test
+    public void selectNativeQuery() throws Exception {
+        AndFilter filter = new AndFilter(Arrays.asList(
+                (DfsFilter) TextFilter.contains("ab"),
+                (DfsFilter) IdFilter.equals("com.example:id/button"),
+                (DfsFilter) TextFilter.equals("abcdef")));
+        assertEquals(NativeQuery.TYPE_VIEW_ID, filter.getNativeQuery().getType());
+
+        filter = new AndFilter(Arrays.asList(
+                (DfsFilter) TextFilter.contains("ab"),
+                (DfsFilter) TextFilter.equals("abcdef")));
+        assertEquals(NativeQuery.TYPE_TEXT, filter.getNativeQuery().getType());
+        assertEquals("abcdef", filter.getNativeQuery().getKey());
+
+        filter = new AndFilter(Collections.singletonList((DfsFilter) TextFilter.matches("[ab]+")));
+        assertNull(filter.getNativeQuery());
+    }
+
+    @Test
+    public void orderByStats() throws Exception {
+        DfsFilter cheap = new TestFilter().setStatsKey("AndFilterTest.cheap");
+        DfsFilter selective = new TestFilter().setStatsKey("AndFilterTest.selective");
+        // 没有统计时保持原有顺序
+        assertEquals(Arrays.asList(cheap, selective), new AndFilter(Arrays.asList(cheap, selective)).getFilters());
+
+        // cheap几乎总是通过，先判断selective能淘汰更多节点
+        for (int i = 0; i < 100; i++) {
+            FilterStats.of("AndFilterTest.cheap").record(200, i != 0);
+            FilterStats.of("AndFilterTest.selective").record(1000, i % 10 == 0);
+        }
+        assertEquals(Arrays.asList(selective, cheap), new AndFilter(Arrays.asList(cheap, selective)).getFilters());
+
+        // 重置只清零统计，已有的AndFilter持有的统计对象仍在表中
+        FilterStats stats = FilterStats.of("AndFilterTest.cheap");
+        FilterStats.resetAll();
+        assertSame(stats, FilterStats.of("AndFilterTest.cheap"));
+        assertTrue(FilterStats.getAll().contains(stats));
+        assertEquals(0, stats.getSamples());
+    }
+
+    private static class TestFilter extends DfsFilter {
+
+        @Override
+        protected boolean isIncluded(UiObject nodeInfo) {
+            return true;
+        }
+    }
+
+}
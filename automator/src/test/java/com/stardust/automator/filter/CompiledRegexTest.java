@@ -0,0 +1,35 @@
+package com.stardust.automator.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/25.
+ */
+public class CompiledRegexTest {
+
+    @Test
+    public void literal() throws Exception {
+        assertEquals("abc", CompiledRegex.compile("abc").getLiteral());
+        assertEquals("abc", CompiledRegex.compile("abc.*").getLiteral());
+        assertEquals("abc", CompiledRegex.compile(".*abc").getLiteral());
+        assertEquals("abc", CompiledRegex.compile(".*abc.*").getLiteral());
+        assertNull(CompiledRegex.compile("a.c").getLiteral());
+        assertNull(CompiledRegex.compile("abc\\.*").getLiteral());
+        assertSame(CompiledRegex.compile("[a-z]+"), CompiledRegex.compile("[a-z]+"));
+    }
+
+    @Test
+    public void matches() throws Exception {
+        String[] regexes = {"abc", "abc.*", ".*abc", ".*abc.*", ".*", "", "a.c", "abc\\.*"};
+        String[] inputs = {"abc", "abcd", "xabc", "xabcx", "ab", "", "a\nc", "abc\nd", "x\nabc", "abc..."};
+        for (String regex : regexes) {
+            CompiledRegex compiled = CompiledRegex.compile(regex);
+            for (String input : inputs) {
+                assertEquals(regex + " / " + input, input.matches(regex), compiled.matches(input));
+            }
+        }
+    }
+
+}
@@ -1,10 +1,13 @@
 package com.stardust.automator.filter;
 
+import com.stardust.automator.test.TestTreeUiObject;
 import com.stardust.automator.test.TestUiObject;
 import com.stardust.automator.UiObject;
 
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -25,6 +28,60 @@ public class DfsFilterTest {
         }
     }
 
+    private static class AllDfsFilter extends DfsFilter {
+
+        @Override
+        protected boolean isIncluded(UiObject nodeInfo) {
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        TestTreeUiObject.alive = 0;
+    }
+
+    @Test
+    public void filterWithDepth() throws Exception {
+        DfsFilter filter = new AllDfsFilter();
+        List<UiObject> root = Collections.<UiObject>singletonList(new TestTreeUiObject());
+        assertEquals(7, filter.filter(root, Integer.MAX_VALUE, SearchOptions.DEFAULT.withMaxDepth(2)).size());
+        // 超过深度上限的子树不会被访问，结果以外的节点都已回收
+        assertEquals(7, TestTreeUiObject.alive);
+        List<UiObject> list = filter.filter(root, Integer.MAX_VALUE, SearchOptions.DEFAULT.withDepth(2));
+        assertEquals(4, list.size());
+        recycle(list);
+        assertEquals(7, TestTreeUiObject.alive);
+        list = filter.filter(root, Integer.MAX_VALUE, SearchOptions.DEFAULT.withBreadthFirst(true));
+        assertEquals(127, list.size());
+        for (int i = 1; i < list.size(); i++) {
+            assertTrue(((TestTreeUiObject) list.get(i - 1)).getDepth() <= ((TestTreeUiObject) list.get(i)).getDepth());
+        }
+        list = filter.filter(root, 3, SearchOptions.DEFAULT.withBreadthFirst(true).withDepth(3));
+        assertEquals(3, list.size());
+        assertEquals(3, ((TestTreeUiObject) list.get(0)).getDepth());
+    }
+
+    private static void recycle(List<UiObject> list) {
+        for (UiObject node : list) {
+            node.recycle();
+        }
+    }
+
+    @Test
+    public void filterBreadthFirst() throws Exception {
+        TestUiObject.count = 0;
+        DfsFilter filter = new RandomDfsFilter();
+        UiObject root = new TestUiObject(10);
+        List<UiObject> list = filter.filter(Collections.singletonList(root), 20, SearchOptions.DEFAULT.withBreadthFirst(true));
+        for (UiObject uiObject : list) {
+            if (root != uiObject)
+                uiObject.recycle();
+        }
+        assertEquals(1, TestUiObject.count);
+        root.recycle();
+    }
+
     @Test
     public void filter() throws Exception {
         DfsFilter filter = new RandomDfsFilter();
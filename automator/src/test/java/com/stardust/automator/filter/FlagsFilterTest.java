@@ -0,0 +1,44 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiSnapshot;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/29.
+ */
+public class FlagsFilterTest {
+
+    @Test
+    public void fold() throws Exception {
+        DfsFilter text = (DfsFilter) TextFilter.equals("OK");
+        List<DfsFilter> folded = FlagsFilter.fold(Arrays.asList(
+                BooleanFilter.get(BooleanFilter.CLICKABLE, true),
+                text,
+                BooleanFilter.get(BooleanFilter.ENABLED, true),
+                BooleanFilter.get(BooleanFilter.SCROLLABLE, false)));
+        assertEquals(2, folded.size());
+        FlagsFilter flags = (FlagsFilter) folded.get(0);
+        assertEquals(UiSnapshot.FLAG_CLICKABLE | UiSnapshot.FLAG_ENABLED | UiSnapshot.FLAG_SCROLLABLE, flags.getMask());
+        assertEquals(UiSnapshot.FLAG_CLICKABLE | UiSnapshot.FLAG_ENABLED, flags.getExpected());
+        assertSame(text, folded.get(1));
+        // 不同的标志组合分开统计
+        assertNotEquals(flags.getStatsKey(), new FlagsFilter(flags.getMask(), 0).getStatsKey());
+
+        List<DfsFilter> single = Arrays.asList(BooleanFilter.get(BooleanFilter.CLICKABLE, true), text);
+        assertSame(single, FlagsFilter.fold(single));
+    }
+
+    @Test
+    public void get() throws Exception {
+        assertSame(BooleanFilter.get(BooleanFilter.DISMISSABLE, true), BooleanFilter.get(BooleanFilter.DISMISSABLE, true));
+        assertNotSame(BooleanFilter.get(BooleanFilter.DISMISSABLE, true), BooleanFilter.get(BooleanFilter.DISMISSABLE, false));
+        assertEquals(UiSnapshot.FLAG_CHECKABLE, BooleanFilter.get(BooleanFilter.CHECKABLE, false).getFlag());
+    }
+
+}
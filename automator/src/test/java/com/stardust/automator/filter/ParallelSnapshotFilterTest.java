@@ -0,0 +1,95 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.MutableUiObject;
+import com.stardust.automator.UiObject;
+import com.stardust.automator.UiSnapshot;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/10.
+ */
+public class ParallelSnapshotFilterTest {
+
+    private static final int[] LIMITS = {1, 2, 5, 37, 300, Integer.MAX_VALUE};
+    private static final SearchOptions[] OPTIONS = {
+            SearchOptions.DEFAULT,
+            SearchOptions.DEFAULT.withMaxDepth(0),
+            SearchOptions.DEFAULT.withMaxDepth(3),
+            SearchOptions.DEFAULT.withDepth(5),
+    };
+
+    private static UiSnapshot sSnapshot;
+    private static int sCount = 0;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        // 约两千个节点，是切分区间阈值的数倍
+        sSnapshot = UiSnapshot.capture(createTree(new Random(0), 0));
+        assertTrue(sSnapshot.size() > 1000);
+    }
+
+    private static MutableUiObject createTree(Random random, int depth) {
+        int number = sCount++;
+        MutableUiObject node = new MutableUiObject("item" + number);
+        if (number % 7 == 0) {
+            node.flags |= UiSnapshot.FLAG_CLICKABLE;
+        }
+        if (number % 11 == 0) {
+            node.flags &= ~UiSnapshot.FLAG_ENABLED;
+        }
+        if (depth < 7) {
+            int childCount = depth < 3 ? 4 : random.nextInt(5);
+            for (int i = 0; i < childCount; i++) {
+                node.children.add(createTree(random, depth + 1));
+            }
+        }
+        return node;
+    }
+
+    @Test
+    public void sameAsSequentialFilter() throws Exception {
+        assertSameAsSequential(BooleanFilter.get(BooleanFilter.CLICKABLE, true));
+        assertSameAsSequential((DfsFilter) TextFilter.matches("item\\d*3"));
+    }
+
+    @Test
+    public void sameAsSequentialFusedFilter() throws Exception {
+        List<DfsFilter> filters = FlagsFilter.fold(Arrays.asList(
+                BooleanFilter.get(BooleanFilter.CLICKABLE, true),
+                BooleanFilter.get(BooleanFilter.ENABLED, true),
+                (DfsFilter) TextFilter.matches("item\\d*[13579]")));
+        assertSameAsSequential(new AndFilter(filters));
+    }
+
+    private static void assertSameAsSequential(DfsFilter filter) {
+        // 从根和一个子树开始
+        for (int root : new int[]{0, sSnapshot.child(0, 1)}) {
+            for (SearchOptions options : OPTIONS) {
+                for (int limit : LIMITS) {
+                    String message = filter + " root=" + root + " " + options + " limit=" + limit;
+                    List<UiObject> expected = filter.filter(Collections.singletonList(sSnapshot.getObject(root)), limit, options);
+                    List<UiObject> actual = ParallelSnapshotFilter.filter(filter, sSnapshot, root, options, limit);
+                    assertEquals(message, texts(expected), texts(actual));
+                }
+            }
+        }
+    }
+
+    private static List<String> texts(List<UiObject> nodes) {
+        List<String> texts = new ArrayList<>(nodes.size());
+        for (UiObject node : nodes) {
+            texts.add(node.getText().toString());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,58 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+import com.stardust.util.Supplier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/31.
+ */
+public class ShortIdFilterTest {
+
+    private static class IdUiObject extends UiObject {
+
+        private final String mId;
+
+        IdUiObject(String id) {
+            super(null);
+            mId = id;
+        }
+
+        @Override
+        public String getViewIdResourceName() {
+            return mId;
+        }
+    }
+
+    @Test
+    public void resolve() throws Exception {
+        final String[] packageName = {""};
+        ShortIdFilter filter = (ShortIdFilter) IdFilter.equals("ok", new Supplier<String>() {
+            @Override
+            public String get() {
+                return packageName[0];
+            }
+        });
+        UiObject a = new IdUiObject("com.a:id/ok");
+        UiObject b = new IdUiObject("com.b:id/ok");
+        assertNull(filter.getNativeQuery());
+        assertFalse(filter.isIncluded(a));
+
+        packageName[0] = "com.a";
+        NativeQuery query = filter.getNativeQuery();
+        assertEquals("com.a:id/ok", query.getKey());
+        assertSame(query, filter.getNativeQuery());
+        assertTrue(filter.isIncluded(a));
+        assertFalse(filter.isIncluded(b));
+
+        packageName[0] = "com.b";
+        assertEquals("com.b:id/ok", filter.getNativeQuery().getKey());
+        assertTrue(filter.isIncluded(b));
+
+        assertFalse(IdFilter.equals("com.a:id/ok", null) instanceof ShortIdFilter);
+    }
+
+}
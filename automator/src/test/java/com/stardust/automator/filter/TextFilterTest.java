@@ -0,0 +1,106 @@
+package com.stardust.automator.filter;
+
+import com.stardust.automator.UiObject;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/5/22.
+ */
+public class TextFilterTest {
+
+    private static class TextUiObject extends UiObject {
+
+        private final String mText;
+        private final String mDesc;
+        private final UiObject[] mChildren;
+        private List<UiObject> mLookupResult = Collections.emptyList();
+        private boolean mLookupComplete = false;
+
+        TextUiObject(String text, String desc, UiObject... children) {
+            super(null);
+            mText = text;
+            mDesc = desc;
+            mChildren = children;
+        }
+
+        TextUiObject lookup(boolean complete, UiObject... result) {
+            mLookupResult = Arrays.asList(result);
+            mLookupComplete = complete;
+            return this;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return mText;
+        }
+
+        @Override
+        public CharSequence getContentDescription() {
+            return mDesc;
+        }
+
+        @Override
+        public UiObject child(int i) {
+            return mChildren[i];
+        }
+
+        @Override
+        public int getChildCount() {
+            return mChildren.length;
+        }
+
+        @Override
+        public List<UiObject> findByText(String text) {
+            // 默认模拟没有实现按文本查找的AccessibilityNodeProvider
+            return mLookupResult;
+        }
+
+        @Override
+        public boolean isTextLookupComplete() {
+            return mLookupComplete;
+        }
+
+        @Override
+        public void recycle() {
+
+        }
+    }
+
+    @Test
+    public void containsMatchesDescIgnoringCase() throws Exception {
+        DfsFilter filter = (DfsFilter) TextFilter.contains("send");
+        assertTrue(filter.isIncluded(new TextUiObject("Send", null)));
+        assertTrue(filter.isIncluded(new TextUiObject(null, "Resend message")));
+        assertFalse(filter.isIncluded(new TextUiObject("Sen", "d")));
+    }
+
+    @Test
+    public void walkWhenNativeQueryFindsNothing() throws Exception {
+        UiObject target = new TextUiObject("ok", null);
+        UiObject root = new TextUiObject(null, null, new TextUiObject("cancel", null), target);
+        assertEquals(Collections.singletonList(target), ((DfsFilter) TextFilter.equals("ok")).filter(root));
+    }
+
+    @Test
+    public void walkWhenNativeQueryIsPartial() throws Exception {
+        UiObject found = new TextUiObject("ok", null);
+        // 例如虚拟节点，按文本查找不到
+        UiObject missed = new TextUiObject(null, "OK");
+        UiObject root = new TextUiObject(null, null, found, missed).lookup(false, found);
+        assertEquals(Arrays.asList(found, missed), ((DfsFilter) TextFilter.contains("ok")).filter(root));
+    }
+
+    @Test
+    public void trustCompleteNativeQuery() throws Exception {
+        UiObject found = new TextUiObject("ok", null);
+        UiObject root = new TextUiObject(null, null, found, new TextUiObject("ok", null)).lookup(true, found);
+        assertEquals(Collections.singletonList(found), ((DfsFilter) TextFilter.contains("ok")).filter(root));
+    }
+}
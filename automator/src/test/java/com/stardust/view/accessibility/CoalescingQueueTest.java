@@ -0,0 +1,182 @@
+package com.stardust.view.accessibility;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/7.
+ */
+public class CoalescingQueueTest {
+
+    private static class Event {
+
+        final String key;
+        final String name;
+        int types;
+        boolean recycled;
+
+        Event(String key, String name, int types) {
+            this.key = key;
+            this.name = name;
+            this.types = types;
+        }
+    }
+
+    private static class ManualScheduler implements CoalescingQueue.Scheduler {
+
+        Runnable scheduled;
+        long delay;
+
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+            scheduled = runnable;
+            delay = delayMillis;
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            if (scheduled == runnable) {
+                scheduled = null;
+            }
+        }
+
+        void runScheduled() {
+            Runnable runnable = scheduled;
+            scheduled = null;
+            if (runnable != null) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static class TestQueue extends CoalescingQueue<Event> {
+
+        final List<String> dispatched = new ArrayList<>();
+        final List<Event> copies = new ArrayList<>();
+        int held = 0;
+
+        TestQueue(Scheduler scheduler) {
+            super(scheduler, 20);
+        }
+
+        @Override
+        protected String keyOf(Event event) {
+            return event.key;
+        }
+
+        @Override
+        protected boolean merge(Event pending, Event event) {
+            if (event.types < 0) {
+                return false;
+            }
+            pending.types = ContentChangeCoalescer.union(pending.types, event.types);
+            return true;
+        }
+
+        @Override
+        protected Event copy(Event event) {
+            Event copy = new Event(event.key, event.name, event.types);
+            copies.add(copy);
+            return copy;
+        }
+
+        @Override
+        protected void recycle(Event event) {
+            assertFalse(event.name + " recycled twice", event.recycled);
+            event.recycled = true;
+        }
+
+        @Override
+        protected void dispatch(Event event) {
+            dispatched.add(event.name + ":" + event.types);
+        }
+
+        @Override
+        protected void onHeld(Event event) {
+            held++;
+        }
+    }
+
+    private ManualScheduler mScheduler;
+    private TestQueue mQueue;
+
+    @Before
+    public void setUp() throws Exception {
+        mScheduler = new ManualScheduler();
+        mQueue = new TestQueue(mScheduler);
+    }
+
+    @Test
+    public void mergeSameKeyUntilWindowEnds() throws Exception {
+        mQueue.offer(new Event("1/a", "a1", 2));
+        mQueue.offer(new Event("1/a", "a2", 4));
+        assertEquals(20, mScheduler.delay);
+        assertEquals(2, mQueue.held);
+        assertEquals(1, mQueue.getPendingCount());
+        assertTrue(mQueue.dispatched.isEmpty());
+
+        mScheduler.runScheduled();
+        assertEquals(Arrays.asList("a1:6"), mQueue.dispatched);
+        assertEquals(1, mQueue.getMergedCount());
+        assertTrue(mQueue.copies.get(0).recycled);
+        assertEquals(0, mQueue.getPendingCount());
+    }
+
+    @Test
+    public void unionWithUndefinedIsUndefined() throws Exception {
+        assertEquals(3, ContentChangeCoalescer.union(1, 2));
+        assertEquals(0, ContentChangeCoalescer.union(0, 2));
+        assertEquals(0, ContentChangeCoalescer.union(1, 0));
+    }
+
+    @Test
+    public void flushPendingBeforeOtherEvents() throws Exception {
+        mQueue.offer(new Event("1/a", "a", 1));
+        mQueue.offer(new Event("1/b", "b", 1));
+        mQueue.offer(new Event("1/a", "a2", 2));
+        mQueue.offer(new Event(null, "state", 0));
+        // 暂存的事件按第一次暂存的顺序先于新事件转发
+        assertEquals(Arrays.asList("a:3", "b:1", "state:0"), mQueue.dispatched);
+        assertNull(mScheduler.scheduled);
+
+        // 无法合并时先转发暂存的事件
+        mQueue.offer(new Event("1/a", "a3", 1));
+        mQueue.offer(new Event("1/a", "a4", -1));
+        assertEquals(Arrays.asList("a:3", "b:1", "state:0", "a3:1", "a4:-1"), mQueue.dispatched);
+        for (Event copy : mQueue.copies) {
+            assertTrue(copy.name, copy.recycled);
+        }
+    }
+
+    @Test
+    public void noCoalescingWithoutWindow() throws Exception {
+        mQueue.setWindowMillis(0);
+        mQueue.offer(new Event("1/a", "a1", 1));
+        mQueue.offer(new Event("1/a", "a2", 1));
+        assertEquals(Arrays.asList("a1:1", "a2:1"), mQueue.dispatched);
+        assertEquals(0, mQueue.held);
+        assertTrue(mQueue.copies.isEmpty());
+    }
+
+    @Test
+    public void clearDropsPendingEvents() throws Exception {
+        mQueue.offer(new Event("1/a", "a", 1));
+        mQueue.offer(new Event("1/b", "b", 1));
+        Runnable flush = mScheduler.scheduled;
+        mQueue.clear();
+        assertNull(mScheduler.scheduled);
+        assertEquals(0, mQueue.getPendingCount());
+        for (Event copy : mQueue.copies) {
+            assertTrue(copy.name, copy.recycled);
+        }
+        // 已经取出的定时任务在clear之后执行也不会再转发
+        flush.run();
+        assertTrue(mQueue.dispatched.isEmpty());
+    }
+}
@@ -0,0 +1,42 @@
+package com.stardust.view.accessibility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Stardust on 2017/6/8.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds() throws Exception {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 100, 1000, 123456, 1L << 30, (1L << 40) - 1}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " >= lower bound", value >= LatencyHistogram.lowerBoundOf(bucket));
+            assertTrue(value + " < upper bound", value < LatencyHistogram.lowerBoundOf(bucket + 1));
+        }
+        assertEquals(LatencyHistogram.bucketOf(1L << 50), LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500, histogram.getMean(), 0.001);
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}